@@ -0,0 +1,15 @@
+#!/bin/sh
+# Runs the JMH suites and writes the results as JSON, named after the cowsay version under test,
+# so that two versions can be compared by diffing (or loading into a JMH visualizer) their result files.
+# CowloaderBenchmark copies cowfiles into a scratch COWPATH directory, which the forked JVMs inherit.
+#
+# Usage: ./run-benchmarks.sh [jmh options...]
+#   e.g. ./run-benchmarks.sh MessageBenchmark -p wordwrap=40
+set -e
+cd "$(dirname "$0")"
+VERSION=$(sed -n 's:.*<cowsay.version>\(.*\)</cowsay.version>.*:\1:p' pom.xml)
+mkdir -p results
+COWPATH=$(mktemp -d)
+export COWPATH
+trap 'rm -rf "$COWPATH"' EXIT
+java -jar target/benchmarks.jar -rf json -rff "results/cowsay-${VERSION}.json" "$@"
@@ -0,0 +1,62 @@
+package com.github.hhiroshell.cowsay;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks CowFormatter.formatCow for every bundled cow in every mode,
+ * both from the raw cowfile (parsing it every time) and from the compiled template.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CowFormatterBenchmark {
+	private String cowfile;
+	private CompiledCow compiled;
+	private Message message;
+
+	/**
+	 * Load the cow and prepare the message.
+	 * @param state The cow and mode.
+	 * @throws CowParseException If the cow cannot be parsed.
+	 */
+	@Setup
+	public void setUp(final CowState state) throws CowParseException {
+		cowfile = Cowloader.load(state.cow);
+		compiled = CowFormatter.compile(cowfile);
+		message = new Message("Moo! The quick brown fox jumps over the lazy cow.", false);
+	}
+
+	/**
+	 * Format the cow from the raw cowfile.
+	 * @param state The cow and mode.
+	 * @return The formatted cow.
+	 * @throws CowParseException If the cow cannot be parsed.
+	 */
+	@Benchmark
+	public String formatCowfile(final CowState state) throws CowParseException {
+		return CowFormatter.formatCow(cowfile, state.face, message);
+	}
+
+	/**
+	 * Format the cow from its compiled template.
+	 * @param state The cow and mode.
+	 * @return The formatted cow.
+	 */
+	@Benchmark
+	public String formatCompiled(final CowState state) {
+		return CowFormatter.formatCow(compiled, state.face, message);
+	}
+}
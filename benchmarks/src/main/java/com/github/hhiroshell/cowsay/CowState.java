@@ -0,0 +1,49 @@
+package com.github.hhiroshell.cowsay;
+
+import java.util.Arrays;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark state shared by the suites: one bundled cow and one cow mode.
+ * Every suite which takes this state is run for all the bundled cows in every mode.
+ */
+@State(Scope.Benchmark)
+public class CowState {
+	/**
+	 * The mode which means no mode was set, i.e. the default face.
+	 */
+	static final String NO_MODE = "none";
+
+	/**
+	 * The bundled cow, as given to `-f`.
+	 */
+	@Param({"beavis.zen", "bong", "bud-frogs", "bunny", "cheese", "cower", "daemon", "default", "dragon-and-cow", "dragon",
+		"elephant-in-snake", "elephant", "eyes", "flaming-sheep", "ghostbusters", "head-in", "hellokitty", "kiss", "kitty",
+		"koala", "kosh", "luke-koala", "meow", "milk", "moofasa", "moose", "mutilated", "ren", "satanic",
+		"sheep", "skeleton", "small", "sodomized", "squirrel", "stegosaurus", "stimpy", "supermilker", "surgery", "telebears",
+		"three-eyes", "turkey", "turtle", "tux", "udder", "vader-koala", "vader", "www"})
+	String cow;
+
+	/**
+	 * The cow mode, one of the keys of CowFace.COW_MODES or "none".
+	 */
+	@Param({NO_MODE, "b", "d", "g", "p", "s", "t", "w", "y"})
+	String mode;
+
+	CowFace face;
+
+	/**
+	 * Check the cow exists, so that a misspelt cow is not silently benchmarked as the default cow, and resolve the face
+	 * for the mode.
+	 */
+	@Setup
+	public void setUp() {
+		if (!Arrays.asList(Cowloader.listAllCowfiles()).contains(cow)) {
+			throw new IllegalStateException("Not a cowfile: " + cow);
+		}
+		face = NO_MODE.equals(mode) ? new CowFace() : CowFace.getByMode(mode);
+	}
+}
@@ -0,0 +1,104 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks Cowloader.load for bundled cowfiles and for cowfiles on disk, found by name on the COWPATH.
+ * The "cold" benchmarks clear the cowfile cache first so they measure reading and decoding the cowfile,
+ * the "cached" benchmarks measure resolving the cowfile and hitting the cache.
+ *
+ * The "cowpath" source needs the COWPATH environment variable to name an empty, writable directory, which the forked
+ * JVMs inherit; run-benchmarks.sh sets one up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CowloaderBenchmark {
+	/**
+	 * Where the cowfile comes from: "bundled" or "cowpath".
+	 */
+	@Param({"bundled", "cowpath"})
+	String source;
+
+	private File cowfile;
+	private String spec;
+
+	/**
+	 * Copy the bundled cow to the first COWPATH directory if it is to be loaded from disk, so that loading it by name
+	 * resolves it through the COWPATH index rather than the bundled cowfiles.
+	 * @param state The cow to load.
+	 * @throws IOException If the cow cannot be copied.
+	 */
+	@Setup
+	public void setUp(final CowState state) throws IOException {
+		spec = state.cow;
+		if ("cowpath".equals(source)) {
+			CowIndex index = Cowloader.getCowIndex();
+			if (index.getDirectories().isEmpty()) {
+				throw new IllegalStateException("COWPATH is not set, use run-benchmarks.sh");
+			}
+			cowfile = new File(index.getDirectories().get(0), state.cow + Cowloader.COWFILE_EXT);
+			InputStream in = Cowloader.class.getResourceAsStream("/cows/" + state.cow + Cowloader.COWFILE_EXT);
+			try {
+				Files.copy(in, cowfile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			} finally {
+				in.close();
+			}
+			index.rescan();
+			if (!cowfile.equals(index.resolve(cowfile.getName()))) {
+				throw new IllegalStateException("Not resolved from the COWPATH: " + spec);
+			}
+		}
+	}
+
+	/**
+	 * Remove the cowfile from the COWPATH, if it was copied there.
+	 */
+	@TearDown
+	public void tearDown() {
+		if (cowfile != null) {
+			cowfile.delete();
+			Cowloader.getCowIndex().rescan();
+			cowfile = null;
+		}
+	}
+
+	/**
+	 * Load the cowfile without the help of the cache.
+	 * @return The cowfile content.
+	 */
+	@Benchmark
+	public String loadCold() {
+		Cowloader.getCache().clear();
+		return Cowloader.load(spec);
+	}
+
+	/**
+	 * Load the cowfile from the cache.
+	 * @return The cowfile content.
+	 */
+	@Benchmark
+	public String loadCached() {
+		return Cowloader.load(spec);
+	}
+}
@@ -0,0 +1,52 @@
+package com.github.hhiroshell.cowsay;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the whole render, from options to output, for every bundled cow in every mode.
+ * This is what a single invocation of the commandline does once the JVM is up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CowsayBenchmark {
+	private Map<String, String> options;
+
+	/**
+	 * Build the options for the cow and mode.
+	 * @param state The cow and mode.
+	 */
+	@Setup
+	public void setUp(final CowState state) {
+		options = new HashMap<String, String>();
+		options.put("f", state.cow);
+		if (!CowState.NO_MODE.equals(state.mode)) {
+			options.put(state.mode, Boolean.TRUE.toString());
+		}
+		options.put(Cowsay.MESSAGE_OPTION, "Moo! The quick brown fox jumps over the lazy cow.");
+	}
+
+	/**
+	 * Parse the options and say the message.
+	 * @return The rendered cow.
+	 */
+	@Benchmark
+	public String say() {
+		return Cowsay.fromOptions(options).say();
+	}
+}
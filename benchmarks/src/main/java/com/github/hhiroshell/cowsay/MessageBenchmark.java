@@ -0,0 +1,76 @@
+package com.github.hhiroshell.cowsay;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks Message.getMessage, i.e. line-wrapping a message and drawing its bubble,
+ * across message lengths and wrap widths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageBenchmark {
+	private static final String[] WORDS = {"moo", "cow", "grass", "udder", "pasture", "milk", "a", "supercalifragilisticexpialidocious"};
+
+	/**
+	 * The number of characters in the message.
+	 */
+	@Param({"10", "100", "1000", "10000"})
+	int length;
+
+	/**
+	 * Where to line-wrap the message, 0 disables line-wrap.
+	 */
+	@Param({"0", "20", "40", "80"})
+	byte wordwrap;
+
+	/**
+	 * Speech or thought.
+	 */
+	@Param({"false", "true"})
+	boolean thought;
+
+	private Message message;
+
+	/**
+	 * Build a message of random words, the same words every time.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		StringBuilder sb = new StringBuilder(length + 40);
+		while (sb.length() < length) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		sb.setLength(length);
+		message = new Message(sb.toString(), thought);
+		message.setWordwrap(wordwrap);
+	}
+
+	/**
+	 * Wrap the message and draw its bubble.
+	 * @return The message in its bubble.
+	 */
+	@Benchmark
+	public String getMessage() {
+		return message.getMessage();
+	}
+}
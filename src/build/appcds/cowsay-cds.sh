@@ -0,0 +1,6 @@
+#!/bin/sh
+# Launches cowsay with the class data sharing archive built by the appcds profile, which skips most class loading,
+# and JVM options suited to a process which renders one cow and exits (use plain java -jar for --serve).
+# The archive is only valid for the JVM which built it, any other JVM ignores it and starts as usual.
+DIR=$(cd "$(dirname "$0")" && pwd)
+exec "${JAVA:-java}" -XX:SharedArchiveFile="$DIR/cowsay.jsa" -Xshare:auto @JVM_OPTIONS@ -jar "$DIR/@JAR@" "$@"
@@ -0,0 +1,234 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Build step which turns the bundled cowfiles into a generated class, BundledCows, holding each cowfile's compiled
+ * template as constants, so that rendering a bundled cow needs no resource I/O or parsing at runtime.
+ * The raw content is not generated, it stays in the cowfile resources and is only read if it is asked for,
+ * see Cowloader#load(String), so each cow is shipped once as text and once compiled.
+ *
+ * The templates are compiled by CowFormatter itself so they are exactly what would be compiled at runtime.
+ * Newlines are written as "\n" and replaced with the platform line separator when the generated class is loaded,
+ * as Cowloader does when it reads a cowfile.
+ *
+ * Usage: BundledCowGenerator &lt;cows directory&gt; &lt;generated sources directory&gt;
+ */
+public final class BundledCowGenerator {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String CLASS_NAME = "BundledCows";
+	private static final String COWFILE_EXT = ".cow";  // not Cowloader's, Cowloader depends on the generated class
+
+	/**
+	 * Utility class does not need a constructor.
+	 */
+	private BundledCowGenerator() {
+
+	}
+
+	/**
+	 * Generate BundledCows.java.
+	 * @param args The directory of bundled cowfiles and the root directory of the generated sources.
+	 * @throws IOException If a cowfile cannot be read or the class cannot be written.
+	 * @throws CowParseException If a bundled cowfile cannot be parsed, which should fail the build.
+	 */
+	public static void main(final String[] args) throws IOException, CowParseException {
+		File cows = new File(args[0]);
+		File packageDir = new File(args[1], CowFormatter.class.getPackage().getName().replace('.', File.separatorChar));
+		if (!packageDir.isDirectory() && !packageDir.mkdirs()) {
+			throw new IOException("Could not create " + packageDir);
+		}
+		File[] cowfiles = cows.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(final File dir, final String name) {
+				return name.endsWith(COWFILE_EXT);
+			}
+		});
+		if (cowfiles == null) {
+			throw new IOException("Could not list " + cows);
+		}
+		Arrays.sort(cowfiles);
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(new File(packageDir, CLASS_NAME + ".java")), UTF8));
+		try {
+			writeClass(out, cowfiles);
+		} finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("Could not write " + CLASS_NAME);
+		}
+	}
+
+	/**
+	 * Write the generated class.
+	 * @param out Where to write the class.
+	 * @param cowfiles The bundled cowfiles, in a stable order.
+	 * @throws IOException If a cowfile cannot be read.
+	 * @throws CowParseException If a cowfile cannot be parsed.
+	 */
+	private static void writeClass(final PrintWriter out, final File[] cowfiles) throws IOException, CowParseException {
+		out.println("package " + CowFormatter.class.getPackage().getName() + ";");
+		out.println();
+		out.println("import java.util.Arrays;");
+		out.println("import java.util.Collections;");
+		out.println("import java.util.HashMap;");
+		out.println("import java.util.HashSet;");
+		out.println("import java.util.Map;");
+		out.println("import java.util.Set;");
+		out.println();
+		out.println("/**");
+		out.println(" * The names and compiled templates of the bundled cowfiles, generated at build time by BundledCowGenerator.");
+		out.println(" * Do not edit, changes to src/main/resources/cows are picked up by the next build.");
+		out.println(" */");
+		out.println("final class " + CLASS_NAME + " {");
+		out.println("\tprivate static final String NL = System.getProperty(\"line.separator\");");
+		out.println("\tprivate static final Set<String> NAMES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(");
+		for (int i = 0; i < cowfiles.length; i++) {
+			String name = cowfiles[i].getName();
+			out.println("\t\t" + quote(name.substring(0, name.length() - COWFILE_EXT.length())) + (i < cowfiles.length - 1 ? "," : ""));
+		}
+		out.println("\t)));");
+		out.println("\tprivate static final Map<String, CompiledCow> COMPILED;");
+		out.println();
+		out.println("\tstatic {");
+		out.println("\t\tMap<String, CompiledCow> compiled = new HashMap<String, CompiledCow>(" + (cowfiles.length * 2) + ");");
+		for (int i = 0; i < cowfiles.length; i++) {
+			out.println("\t\tcow" + i + "(compiled);");
+		}
+		out.println("\t\tCOMPILED = Collections.unmodifiableMap(compiled);");
+		out.println("\t}");
+		out.println();
+		out.println("\t/**");
+		out.println("\t * Utility class does not need a constructor.");
+		out.println("\t */");
+		out.println("\tprivate " + CLASS_NAME + "() {");
+		out.println();
+		out.println("\t}");
+		out.println();
+		out.println("\t/**");
+		out.println("\t * Get the names of the bundled cowfiles.");
+		out.println("\t * @return The names, without the extension, e.g. \"tux\".");
+		out.println("\t */");
+		out.println("\tstatic Set<String> getNames() {");
+		out.println("\t\treturn NAMES;");
+		out.println("\t}");
+		out.println();
+		out.println("\t/**");
+		out.println("\t * Get the compiled template of a bundled cowfile.");
+		out.println("\t * @param name The cowfile name, e.g. \"tux.cow\".");
+		out.println("\t * @return The compiled cow or null if there is no such bundled cowfile.");
+		out.println("\t */");
+		out.println("\tstatic CompiledCow getCompiled(final String name) {");
+		out.println("\t\treturn COMPILED.get(name);");
+		out.println("\t}");
+		out.println();
+		out.println("\t/**");
+		out.println("\t * Replace the newlines in generated constants with the platform line separator.");
+		out.println("\t * @param text A generated constant.");
+		out.println("\t * @return The text with platform newlines.");
+		out.println("\t */");
+		out.println("\tprivate static String nl(final String text) {");
+		out.println("\t\treturn \"\\n\".equals(NL) ? text : text.replace(\"\\n\", NL);");
+		out.println("\t}");
+		for (int i = 0; i < cowfiles.length; i++) {
+			writeCow(out, i, cowfiles[i]);
+		}
+		out.println("}");
+	}
+
+	/**
+	 * Write the method which adds one cowfile to the map, each cowfile has its own method to keep methods small.
+	 * @param out Where to write the method.
+	 * @param index The index of the cowfile.
+	 * @param cowfile The cowfile.
+	 * @throws IOException If the cowfile cannot be read.
+	 * @throws CowParseException If the cowfile cannot be parsed.
+	 */
+	private static void writeCow(final PrintWriter out, final int index, final File cowfile) throws IOException, CowParseException {
+		String content = read(cowfile);
+		CompiledCow compiled = CowFormatter.compile(content);
+		String name = quote(cowfile.getName());
+		out.println();
+		out.println("\t/**");
+		out.println("\t * " + cowfile.getName());
+		out.println("\t */");
+		out.println("\tprivate static void cow" + index + "(final Map<String, CompiledCow> compiled) {");
+		out.println("\t\tcompiled.put(" + name + ", new CompiledCow(new String[]{");
+		String[] literals = compiled.getLiterals();
+		for (int i = 0; i < literals.length; i++) {
+			out.println("\t\t\tnl(" + quote(literals[i]) + ")" + (i < literals.length - 1 ? "," : ""));
+		}
+		out.print("\t\t}, new CompiledCow.Slot[]{");
+		CompiledCow.Slot[] slots = compiled.getSlots();
+		for (int i = 0; i < slots.length; i++) {
+			out.print((i > 0 ? ", " : "") + "CompiledCow.Slot." + slots[i].name());
+		}
+		out.println("}));");
+		out.println("\t}");
+	}
+
+	/**
+	 * Read a cowfile the way Cowloader does, line by line, but with "\n" newlines.
+	 * @param cowfile The cowfile.
+	 * @return The content of the cowfile.
+	 * @throws IOException If the cowfile cannot be read.
+	 */
+	private static String read(final File cowfile) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cowfile), UTF8));
+		try {
+			StringBuilder sb = new StringBuilder();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sb.append(line).append('\n');
+			}
+			return sb.toString();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Quote text as a Java string literal.
+	 * @param text The text.
+	 * @return The string literal.
+	 */
+	private static String quote(final String text) {
+		StringBuilder sb = new StringBuilder(text.length() + 16);
+		sb.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '"':
+					sb.append("\\\"");
+					break;
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				default:
+					if (c < ' ' || c > '~') {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+					break;
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
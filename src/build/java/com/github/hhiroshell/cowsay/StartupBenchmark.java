@@ -0,0 +1,121 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Build step which measures the time to first cow, i.e. the whole of `cowsay Hello`, for several ways of launching
+ * cowsay, e.g. plain `java -jar` against the class data sharing launcher or the native executable.
+ * The results are printed, each relative to the first launcher, and written as JSON.
+ *
+ * Usage: StartupBenchmark &lt;runs&gt; &lt;results file&gt; -- &lt;launcher command...&gt; [-- &lt;launcher command...&gt;]...
+ * Each launcher command is given without the message, "Hello" is appended to it.
+ */
+public final class StartupBenchmark {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String SEPARATOR = "--";
+	private static final int WARMUP_RUNS = 3;
+
+	/**
+	 * Utility class does not need a constructor.
+	 */
+	private StartupBenchmark() {
+
+	}
+
+	/**
+	 * Run the benchmark.
+	 * @param args The number of runs, where to write the results and the launcher commands, each after a "--".
+	 * @throws IOException If cowsay cannot be launched or the results cannot be written.
+	 * @throws InterruptedException If interrupted while waiting for cowsay.
+	 */
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		int runs = Integer.parseInt(args[0]);
+		List<List<String>> commands = new ArrayList<List<String>>();
+		for (int i = 2; i < args.length; i++) {
+			if (SEPARATOR.equals(args[i])) {
+				commands.add(new ArrayList<String>());
+			} else if (!commands.isEmpty()) {
+				commands.get(commands.size() - 1).add(args[i]);
+			}
+		}
+		for (List<String> command : commands) {
+			command.add("Hello");
+			time(command, WARMUP_RUNS);
+		}
+		// alternate so that every launcher sees the same machine conditions
+		long[] nanos = new long[commands.size()];
+		for (int i = 0; i < runs; i++) {
+			for (int j = 0; j < commands.size(); j++) {
+				nanos[j] += time(commands.get(j), 1);
+			}
+		}
+		System.out.println(String.format(Locale.ROOT, "Time to first cow over %d runs:", runs));
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(args[1]), UTF8));
+		try {
+			out.println("[");
+			for (int j = 0; j < commands.size(); j++) {
+				String command = join(commands.get(j));
+				double millis = nanos[j] / 1e6 / runs;
+				System.out.println(String.format(Locale.ROOT, "  %.1f ms (%.2fx) %s", millis, (double) nanos[0] / nanos[j], command));
+				out.print(String.format(Locale.ROOT, "  {\"command\": \"%s\", \"runs\": %d, \"mean_ms\": %.1f}",
+						command.replace("\\", "\\\\").replace("\"", "\\\""), runs, millis));
+				out.println(j < commands.size() - 1 ? "," : "");
+			}
+			out.println("]");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Join a command into one line, for display.
+	 * @param command The command.
+	 * @return The command and its arguments separated by spaces.
+	 */
+	private static String join(final List<String> command) {
+		StringBuilder sb = new StringBuilder();
+		for (String arg : command) {
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(arg);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Launch a command a number of times, discarding its output.
+	 * @param command The command.
+	 * @param runs How many times to run it.
+	 * @return The total wall time in nanoseconds.
+	 * @throws IOException If the command cannot be launched or fails.
+	 * @throws InterruptedException If interrupted while waiting for the command.
+	 */
+	private static long time(final List<String> command, final int runs) throws IOException, InterruptedException {
+		ProcessBuilder builder = new ProcessBuilder(new ArrayList<String>(command));
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(ProcessBuilder.Redirect.PIPE);
+		long total = 0;
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			Process process = builder.start();
+			byte[] buffer = new byte[8192];
+			while (process.getInputStream().read(buffer) >= 0) {
+				// the cow is not needed, only the time it takes to appear
+			}
+			int status = process.waitFor();
+			total += System.nanoTime() - start;
+			if (status != 0) {
+				throw new IOException(command + " exited with " + status);
+			}
+		}
+		return total;
+	}
+}
@@ -0,0 +1,35 @@
+package com.github.hhiroshell.cowsay;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Stands in for the generated BundledCows while BundledCowGenerator is compiled along with the main sources,
+ * which refer to it. It is never packaged; it must have the same signatures as the class the generator writes.
+ */
+final class BundledCows {
+
+	/**
+	 * Utility class does not need a constructor.
+	 */
+	private BundledCows() {
+
+	}
+
+	/**
+	 * Get the names of the bundled cowfiles.
+	 * @return Always empty, nothing has been generated yet.
+	 */
+	static Set<String> getNames() {
+		return Collections.emptySet();
+	}
+
+	/**
+	 * Get the compiled template of a bundled cowfile.
+	 * @param name The cowfile name, e.g. "tux.cow".
+	 * @return Always null, nothing has been generated yet.
+	 */
+	static CompiledCow getCompiled(final String name) {
+		return null;
+	}
+}
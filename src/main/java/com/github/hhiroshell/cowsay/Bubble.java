@@ -1,14 +1,18 @@
 package com.github.hhiroshell.cowsay;
-import org.apache.commons.lang3.StringUtils;
+import java.io.IOException;
 
 /**
  * Knows how to draw a speech or thought bubble around a message.
  *
+ * Bubbles are written straight into the caller's StringBuilder or Appendable, in a {@link BubbleStyle}. The borders
+ * and padding are copied from the style's prebuilt runs rather than built afresh for every line, so drawing a bubble
+ * costs time proportional to its size and a constant number of allocations.
+ * Lines are padded to the width of the longest line in terminal columns, see {@link DisplayWidth}, rather than in
+ * chars, so bubbles around CJK and emoji line up.
+ *
  * @author Rick Brown
  */
 public final class Bubble {
-	private static final BubbleWrap SPEECH_BUBBLE;
-	private static final BubbleWrap THOUGHT_BUBBLE;
 
 	/**
 	 * Utility class does not need a constructor.
@@ -17,163 +21,97 @@ public final class Bubble {
 
 	}
 
-	static {
-		SPEECH_BUBBLE = new BubbleWrap();
-		SPEECH_BUBBLE.setSingle('<', '>');
-		SPEECH_BUBBLE.setMulti('/', '\\', '|', '|', '\\', '/');
-		THOUGHT_BUBBLE = new BubbleWrap();
-		THOUGHT_BUBBLE.setSingle('(', ')');
-		THOUGHT_BUBBLE.setMulti('(', ')', '(', ')', '(', ')');
-	}
-
 	/**
 	 * Draws a complete bubble around a line-wrapped message.
-	 * @param bubble The BubbleWrap to use (e.g. SPEECH_BUBBLE or THOUGHT_BUBBLE)
+	 * @param bubble The style of bubble to draw.
 	 * @param message The message to wrap, it should already be line-wrapped if appropriate.
-	 * @param longestLine The length of the longest line in the message.
+	 * @param longestLine The width of the longest line in the message.
 	 * @return The message, wrapped in a bubble.
 	 */
-	private static String formatBubble(final BubbleWrap bubble, final String message, final int longestLine) {
-		String newLine = System.getProperty("line.separator");
-		String[] lines = message.split(newLine);
-		StringBuilder sb = new StringBuilder();
-		sb.append(bubble.buildTop(longestLine));
-		if (lines.length > 1) {
-			sb.append(bubble.formatMultiOpen(lines[0], longestLine));
-			for (int i = 1; i < (lines.length - 1); i++) {
-				sb.append(bubble.formatMultiMid(lines[i], longestLine));
-			}
-			sb.append(bubble.formatMultiEnd(lines[(lines.length - 1)], longestLine));
-		} else {
-			sb.append(bubble.formatSingle(lines[0]));
+	public static String formatBubble(final BubbleStyle bubble, final String message, final int longestLine) {
+		WordWrapper lines = new WordWrapper();
+		lines.wrap(message, 0, System.getProperty("line.separator"));
+		StringBuilder sb = new StringBuilder(measureBubble(bubble, lines, longestLine));
+		try {
+			appendBubble(bubble, message, lines, longestLine, sb);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);  // StringBuilder does not throw IOException
 		}
-		sb.append(bubble.buildBottom(longestLine));
 		return sb.toString();
 	}
 
+	/**
+	 * Works out exactly how many characters a bubble will take, so that the output can be presized.
+	 * @param bubble The style of bubble to draw.
+	 * @param lines The line-wrapped message.
+	 * @param longestLine The width of the longest line in the message.
+	 * @return The length of the bubble in chars, including the message.
+	 */
+	static int measureBubble(final BubbleStyle bubble, final WordWrapper lines, final int longestLine) {
+		int lineCount = lines.getLineCount();
+		int length = bubble.measureBorders(longestLine);
+		for (int i = 0; i < lineCount; i++) {
+			length += bubble.getOpen(i, lineCount).length() + bubble.getClose(i, lineCount).length();
+			length += lines.getLineEnd(i) - lines.getLineStart(i);
+			if (lineCount > 1) {
+				length += Math.max(0, longestLine - lines.getLineWidth(i));
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Draws a complete bubble around a message which has been line-wrapped by a WordWrapper.
+	 * @param bubble The style of bubble to draw.
+	 * @param message The message, as it was given to the WordWrapper.
+	 * @param lines The line-wrapped message.
+	 * @param out Where to write the bubble.
+	 * @throws IOException If writing fails.
+	 */
+	static void appendBubble(final BubbleStyle bubble, final CharSequence message, final WordWrapper lines, final Appendable out) throws IOException {
+		appendBubble(bubble, message, lines, lines.getLongestLine(), out);
+	}
+
+	/**
+	 * Draws a complete bubble around a message which has been line-wrapped by a WordWrapper.
+	 * @param bubble The style of bubble to draw.
+	 * @param message The message, as it was given to the WordWrapper.
+	 * @param lines The line-wrapped message.
+	 * @param longestLine The width of the longest line in the message.
+	 * @param out Where to write the bubble.
+	 * @throws IOException If writing fails.
+	 */
+	private static void appendBubble(final BubbleStyle bubble, final CharSequence message, final WordWrapper lines,
+			final int longestLine, final Appendable out) throws IOException {
+		int lineCount = lines.getLineCount();
+		bubble.appendTop(out, longestLine);
+		for (int i = 0; i < lineCount; i++) {
+			int start = lines.getLineStart(i);
+			int end = lines.getLineEnd(i);
+			bubble.appendOpen(out, i, lineCount);
+			out.append(message, start, end);
+			bubble.appendClose(out, i, lineCount, longestLine - lines.getLineWidth(i));
+		}
+		bubble.appendBottom(out, longestLine);
+	}
+
 	/**
 	 * Wraps the message in a speech bubble.
 	 * @param message A message that has already been line wrapped (if necessary).
-	 * @param longestLine The number of characters in the longest line of the message.
+	 * @param longestLine The width of the longest line of the message, in columns.
 	 * @return The message, wrapped in a speech bubble.
 	 */
 	public static String formatSpeech(final String message, final int longestLine) {
-		return formatBubble(SPEECH_BUBBLE, message, longestLine);
+		return formatBubble(BubbleStyle.getDefault(false), message, longestLine);
 	}
 
 	/**
 	 * Wraps the message in a thought bubble.
 	 * @param message A message that has already been line wrapped (if necessary).
-	 * @param longestLine The number of characters in the longest line of the message.
+	 * @param longestLine The width of the longest line of the message, in columns.
 	 * @return The message, wrapped in a thought bubble.
 	 */
 	public static String formatThought(final String message, final int longestLine) {
-		return formatBubble(THOUGHT_BUBBLE, message, longestLine);
-	}
-
-	/**
-	 * Instances of this class knows about bubble wrapping characters for a specific bubble type.
-	 */
-	private static class BubbleWrap {
-		private String singleOpen;  // characters to use at start of a single line bubble
-		private String singleClose;  // characters to use at end of a single line bubble
-		private String multiStartOpen;  // characters to use at start of first line of a multi line bubble
-		private String multiStartClose;  // characters to use at end of first line of a multi line bubble
-		private String multiMidOpen;  // characters to use at start of ongoing lines of a multi line bubble
-		private String multiMidClose;  // characters to use at end of ongoing lines of a multi line bubble
-		private String multiEndOpen;  // characters to use at start of final line of a multi line bubble
-		private String multiEndClose;  // characters to use at end of final line of a multi line bubble
-		private final String newLine = System.getProperty("line.separator");
-
-		/**
-		 * Set the characters to use for a single line bubble.
-		 * @param open The bubble character to use at the start of the line.
-		 * @param close The bubble character to use at the end of the line.
-		 */
-		public void setSingle(final char open, final char close) {
-			this.singleOpen = open + " ";
-			this.singleClose = " " + close;
-		}
-
-		/**
-		 * Set the characters to use for multi line bubbles.
-		 * @param open The bubble character to use at the start of the first line.
-		 * @param close The bubble character to use at the end of the first line.
-		 * @param midOpen The character to use at the start of subsequent lines.
-		 * @param midClose The character to use at the end of subsequent lines.
-		 * @param endOpen The character to use at the start of the final line.
-		 * @param endClose The character to use at the end of the final line.
-		 */
-		public void setMulti(final char open, final char close, final char midOpen, final char midClose, final char endOpen, final char endClose) {
-			this.multiStartOpen = open + " ";
-			this.multiStartClose = " " + close;
-			this.multiMidOpen = midOpen + " ";
-			this.multiMidClose = " " + midClose;
-			this.multiEndOpen = endOpen + " ";
-			this.multiEndClose = " " + endClose;
-		}
-
-		/**
-		 * Build the line that forms the top of the bubble.
-		 * @param longestLine The length of the longest line in the message.
-		 * @return The top line.
-		 */
-		public String buildTop(final int longestLine) {
-			String result = StringUtils.repeat('_', longestLine + 2);
-			return " " + result + newLine;
-		}
-
-		/**
-		 * Build the line that forms the bottom of the bubble.
-		 * @param longestLine The length of the longest line in the message.
-		 * @return The bottom line.
-		 */
-		public String buildBottom(final int longestLine) {
-			String result = StringUtils.repeat('-', longestLine + 2);
-			return " " + result;
-		}
-
-		/**
-		 * Apply bubble formatting to a single line message.
-		 * @param line The message line.
-		 * @return The line with start and end characters.
-		 */
-		public String formatSingle(final String line) {
-			String result = line;
-			return singleOpen + result + singleClose + newLine;
-		}
-
-		/**
-		 * Apply bubble formatting to a first line of a mutli line message.
-		 * @param line The message line.
-		 * @param padTo The minimum length the string should be after padding is applied.
-		 * @return The line with start and end characters.
-		 */
-		public String formatMultiOpen(final String line, final int padTo) {
-			String result = StringUtils.rightPad(line, padTo);
-			return multiStartOpen + result + multiStartClose + newLine;
-		}
-
-		/**
-		 * Apply bubble formatting to a subsequent line of a mutli line message.
-		 * @param line The message line.
-		 * @param padTo The minimum length the string should be after padding is applied.
-		 * @return The line with start and end characters.
-		 */
-		public String formatMultiMid(final String line, final int padTo) {
-			String result = StringUtils.rightPad(line, padTo);
-			return multiMidOpen + result + multiMidClose + newLine;
-		}
-
-		/**
-		 * Apply bubble formatting to a last line of a mutli line message.
-		 * @param line The message line.
-		 * @param padTo The minimum length the string should be after padding is applied.
-		 * @return The line with start and end characters.
-		 */
-		public String formatMultiEnd(final String line, final int padTo) {
-			String result = StringUtils.rightPad(line, padTo);
-			return multiEndOpen + result + multiEndClose + newLine;
-		}
+		return formatBubble(BubbleStyle.getDefault(true), message, longestLine);
 	}
 }
@@ -0,0 +1,354 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How a bubble is drawn: the borders above and below the message and the characters either side of each line.
+ *
+ * Styles are registered by name, see {@link #register(String, BubbleStyle)}, and picked with `--bubble` on the
+ * commandline or "bubble" in a batch record or HTTP request. Besides the classic speech ("say") and thought ("think")
+ * bubbles there are boxes drawn with rounded ("round") or double ("double") box-drawing lines.
+ *
+ * Every fragment of a style is built once, when the style is built: the line ends including the line break and a
+ * long run of each border character which borders are copied from, so custom styles draw as fast as the built-in ones.
+ * Styles are immutable, build them with {@link #builder()}.
+ */
+public final class BubbleStyle {
+	/**
+	 * The name of the classic speech bubble.
+	 */
+	public static final String SAY = "say";
+
+	/**
+	 * The name of the classic thought bubble.
+	 */
+	public static final String THINK = "think";
+
+	/**
+	 * The name of the box with rounded corners.
+	 */
+	public static final String ROUND = "round";
+
+	/**
+	 * The name of the box drawn with double lines.
+	 */
+	public static final String DOUBLE = "double";
+
+	/**
+	 * The length of the runs of border and padding characters, longer runs are appended in several chunks.
+	 */
+	private static final int RUN_LENGTH = 256;
+	private static final String SPACES = repeat(' ', RUN_LENGTH);
+	private static final String NEWLINE = System.getProperty("line.separator");
+
+	private static final BubbleStyle SPEECH = builder().build();
+	private static final BubbleStyle THOUGHT = builder().single('(', ')').multi('(', ')', '(', ')', '(', ')').build();
+	private static final Map<String, BubbleStyle> STYLES = new ConcurrentHashMap<String, BubbleStyle>();
+
+	private final String topStart;  // characters before the top border
+	private final String topRun;  // a run of the top border character
+	private final String topEnd;  // characters after the top border, and the line break
+	private final String bottomStart;  // characters before the bottom border
+	private final String bottomRun;  // a run of the bottom border character
+	private final String bottomEnd;  // characters after the bottom border
+	private final String singleOpen;  // characters to use at start of a single line bubble
+	private final String singleClose;  // characters to use at end of a single line bubble, and the line break
+	private final String multiStartOpen;  // characters to use at start of first line of a multi line bubble
+	private final String multiStartClose;  // characters to use at end of first line of a multi line bubble, and the line break
+	private final String multiMidOpen;  // characters to use at start of ongoing lines of a multi line bubble
+	private final String multiMidClose;  // characters to use at end of ongoing lines of a multi line bubble, and the line break
+	private final String multiEndOpen;  // characters to use at start of final line of a multi line bubble
+	private final String multiEndClose;  // characters to use at end of final line of a multi line bubble, and the line break
+
+	static {
+		STYLES.put(SAY, SPEECH);
+		STYLES.put(THINK, THOUGHT);
+		// box-drawing characters: light arcs and lines, then double lines
+		STYLES.put(ROUND, builder().top("\u256d", '\u2500', "\u256e").bottom("\u2570", '\u2500', "\u256f")
+				.single('\u2502', '\u2502').multi('\u2502', '\u2502', '\u2502', '\u2502', '\u2502', '\u2502').build());
+		STYLES.put(DOUBLE, builder().top("\u2554", '\u2550', "\u2557").bottom("\u255a", '\u2550', "\u255d")
+				.single('\u2551', '\u2551').multi('\u2551', '\u2551', '\u2551', '\u2551', '\u2551', '\u2551').build());
+	}
+
+	/**
+	 * Create a style from a completed builder, building all of its fragments.
+	 * @param builder The builder holding the style's characters.
+	 */
+	private BubbleStyle(final Builder builder) {
+		this.topStart = builder.topStart;
+		this.topRun = repeat(builder.topFill, RUN_LENGTH);
+		this.topEnd = builder.topEnd + NEWLINE;
+		this.bottomStart = builder.bottomStart;
+		this.bottomRun = repeat(builder.bottomFill, RUN_LENGTH);
+		this.bottomEnd = builder.bottomEnd;
+		this.singleOpen = builder.single[0] + " ";
+		this.singleClose = " " + builder.single[1] + NEWLINE;
+		this.multiStartOpen = builder.multi[0] + " ";
+		this.multiStartClose = " " + builder.multi[1] + NEWLINE;
+		this.multiMidOpen = builder.multi[2] + " ";
+		this.multiMidClose = " " + builder.multi[3] + NEWLINE;
+		this.multiEndOpen = builder.multi[4] + " ";
+		this.multiEndClose = " " + builder.multi[5] + NEWLINE;
+	}
+
+	/**
+	 * Start building a style.
+	 * @return A builder which, until told otherwise, builds the classic speech bubble.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Register a style so it can be used by name. The built-in styles cannot be replaced, any other name can.
+	 * @param name The name of the style.
+	 * @param style The style.
+	 * @throws IllegalArgumentException If the name is empty or is the name of a built-in style.
+	 */
+	public static void register(final String name, final BubbleStyle style) {
+		if (name == null || name.isEmpty() || style == null) {
+			throw new IllegalArgumentException("A bubble style needs a name");
+		}
+		if (SAY.equals(name) || THINK.equals(name) || ROUND.equals(name) || DOUBLE.equals(name)) {
+			throw new IllegalArgumentException("Cannot replace the built-in bubble style: " + name);
+		}
+		STYLES.put(name, style);
+	}
+
+	/**
+	 * Look up a style by name.
+	 * @param name The name the style was registered with.
+	 * @return The style, or null if there is no style with that name.
+	 */
+	public static BubbleStyle forName(final String name) {
+		return name != null ? STYLES.get(name) : null;
+	}
+
+	/**
+	 * Get the names of all the registered styles.
+	 * @return The names, in alphabetical order.
+	 */
+	public static Set<String> getNames() {
+		return Collections.unmodifiableSet(new TreeSet<String>(STYLES.keySet()));
+	}
+
+	/**
+	 * Get the classic speech or thought bubble.
+	 * @param isThought true for the thought bubble, false for the speech bubble.
+	 * @return The style.
+	 */
+	static BubbleStyle getDefault(final boolean isThought) {
+		return isThought ? THOUGHT : SPEECH;
+	}
+
+	/**
+	 * Works out how many chars the top and bottom borders take.
+	 * @param longestLine The width of the longest line in the message.
+	 * @return The length of both borders, including the line break after the top one.
+	 */
+	int measureBorders(final int longestLine) {
+		return topStart.length() + topEnd.length() + bottomStart.length() + bottomEnd.length() + 2 * (longestLine + 2);
+	}
+
+	/**
+	 * Write the line that forms the top of the bubble.
+	 * @param out Where to write the bubble.
+	 * @param longestLine The width of the longest line in the message.
+	 * @throws IOException If writing fails.
+	 */
+	void appendTop(final Appendable out, final int longestLine) throws IOException {
+		out.append(topStart);
+		appendRun(out, topRun, longestLine + 2);
+		out.append(topEnd);
+	}
+
+	/**
+	 * Write the line that forms the bottom of the bubble.
+	 * @param out Where to write the bubble.
+	 * @param longestLine The width of the longest line in the message.
+	 * @throws IOException If writing fails.
+	 */
+	void appendBottom(final Appendable out, final int longestLine) throws IOException {
+		out.append(bottomStart);
+		appendRun(out, bottomRun, longestLine + 2);
+		out.append(bottomEnd);
+	}
+
+	/**
+	 * Get the characters which start a line of the bubble.
+	 * @param index The index of this line in the message.
+	 * @param count The number of lines in the message.
+	 * @return The opening characters.
+	 */
+	String getOpen(final int index, final int count) {
+		if (count == 1) {
+			return singleOpen;
+		} else if (index == 0) {
+			return multiStartOpen;
+		} else if (index == count - 1) {
+			return multiEndOpen;
+		}
+		return multiMidOpen;
+	}
+
+	/**
+	 * Get the characters which end a line of the bubble, including the line break.
+	 * @param index The index of this line in the message.
+	 * @param count The number of lines in the message.
+	 * @return The closing characters.
+	 */
+	String getClose(final int index, final int count) {
+		if (count == 1) {
+			return singleClose;
+		} else if (index == 0) {
+			return multiStartClose;
+		} else if (index == count - 1) {
+			return multiEndClose;
+		}
+		return multiMidClose;
+	}
+
+	/**
+	 * Writes the start of a line of the bubble.
+	 * @param out Where to write the bubble.
+	 * @param index The index of this line in the message.
+	 * @param count The number of lines in the message.
+	 * @throws IOException If writing fails.
+	 */
+	void appendOpen(final Appendable out, final int index, final int count) throws IOException {
+		out.append(getOpen(index, count));
+	}
+
+	/**
+	 * Writes the end of a line of the bubble, including any padding and the line break.
+	 * A single line bubble is never padded.
+	 * @param out Where to write the bubble.
+	 * @param index The index of this line in the message.
+	 * @param count The number of lines in the message.
+	 * @param padding The number of spaces needed to pad this line to the width of the longest line.
+	 * @throws IOException If writing fails.
+	 */
+	void appendClose(final Appendable out, final int index, final int count, final int padding) throws IOException {
+		if (count > 1) {
+			appendRun(out, SPACES, padding);
+		}
+		out.append(getClose(index, count));
+	}
+
+	/**
+	 * Appends a run of the same character, copied from one of the prebuilt runs.
+	 * @param out Where to write the run.
+	 * @param run The prebuilt run of the character to repeat.
+	 * @param count How many characters to write, nothing is written if this is zero or less.
+	 * @throws IOException If writing fails.
+	 */
+	private static void appendRun(final Appendable out, final String run, final int count) throws IOException {
+		int remaining = count;
+		while (remaining > 0) {
+			int chunk = Math.min(remaining, run.length());
+			out.append(run, 0, chunk);
+			remaining -= chunk;
+		}
+	}
+
+	/**
+	 * Builds a string of the same character repeated.
+	 * @param c The character to repeat.
+	 * @param count How many times to repeat it.
+	 * @return The repeated character.
+	 */
+	private static String repeat(final char c, final int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	/**
+	 * Builds a BubbleStyle. Every character should take one column for the bubble to line up.
+	 */
+	public static final class Builder {
+		private String topStart = " ";
+		private char topFill = '_';
+		private String topEnd = "";
+		private String bottomStart = " ";
+		private char bottomFill = '-';
+		private String bottomEnd = "";
+		private char[] single = {'<', '>'};
+		private char[] multi = {'/', '\\', '|', '|', '\\', '/'};
+
+		/**
+		 * Use the BubbleStyle factory method.
+		 */
+		private Builder() {
+
+		}
+
+		/**
+		 * Set the line above the message.
+		 * @param start The corner, or a space for no corner.
+		 * @param fill The character the border is drawn with.
+		 * @param end The corner, or an empty string for no corner.
+		 * @return This builder.
+		 */
+		public Builder top(final String start, final char fill, final String end) {
+			this.topStart = start;
+			this.topFill = fill;
+			this.topEnd = end;
+			return this;
+		}
+
+		/**
+		 * Set the line below the message.
+		 * @param start The corner, or a space for no corner.
+		 * @param fill The character the border is drawn with.
+		 * @param end The corner, or an empty string for no corner.
+		 * @return This builder.
+		 */
+		public Builder bottom(final String start, final char fill, final String end) {
+			this.bottomStart = start;
+			this.bottomFill = fill;
+			this.bottomEnd = end;
+			return this;
+		}
+
+		/**
+		 * Set the characters to use for a single line bubble.
+		 * @param open The bubble character to use at the start of the line.
+		 * @param close The bubble character to use at the end of the line.
+		 * @return This builder.
+		 */
+		public Builder single(final char open, final char close) {
+			this.single = new char[]{open, close};
+			return this;
+		}
+
+		/**
+		 * Set the characters to use for multi line bubbles.
+		 * @param open The bubble character to use at the start of the first line.
+		 * @param close The bubble character to use at the end of the first line.
+		 * @param midOpen The character to use at the start of subsequent lines.
+		 * @param midClose The character to use at the end of subsequent lines.
+		 * @param endOpen The character to use at the start of the final line.
+		 * @param endClose The character to use at the end of the final line.
+		 * @return This builder.
+		 */
+		public Builder multi(final char open, final char close, final char midOpen, final char midClose, final char endOpen, final char endClose) {
+			this.multi = new char[]{open, close, midOpen, midClose, endOpen, endClose};
+			return this;
+		}
+
+		/**
+		 * Build the style.
+		 * @return An immutable style.
+		 */
+		public BubbleStyle build() {
+			return new BubbleStyle(this);
+		}
+	}
+}
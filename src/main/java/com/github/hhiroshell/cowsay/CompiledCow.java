@@ -0,0 +1,200 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cow template which has been parsed once into a render plan.
+ * The plan is a sequence of literal segments interleaved with slots for the eyes, tongue and thoughts,
+ * so rendering is a single append pass with no regular expressions and no intermediate strings.
+ *
+ * Instances are immutable and may be shared between threads. Use {@link CowFormatter#compile(String)} to build one.
+ * For the fixed faces (the default face and the mode faces) the rendered cow is also kept, encoded as UTF-8,
+ * so that it can be written as bytes with no rendering or encoding at all.
+ */
+public final class CompiledCow {
+
+	/**
+	 * The variables which may appear in a cow template.
+	 */
+	enum Slot {
+		EYES, TONGUE, THOUGHTS
+	}
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final String[] literals;  // always one more literal than there are slots
+	private final Slot[] slots;
+	private final int literalLength;
+	private final ConcurrentHashMap<String, byte[]> encoded = new ConcurrentHashMap<String, byte[]>();  // by mode and thoughts
+
+	/**
+	 * Create a render plan.
+	 * @param literals The literal segments, there must be exactly one more literal than slots.
+	 * @param slots The slots which appear between each pair of literals.
+	 */
+	CompiledCow(final String[] literals, final Slot[] slots) {
+		if (literals.length != slots.length + 1) {
+			throw new IllegalArgumentException("Expected " + (slots.length + 1) + " literals but got " + literals.length);
+		}
+		this.literals = literals.clone();
+		this.slots = slots.clone();
+		int length = 0;
+		for (String literal : literals) {
+			length += literal.length();
+		}
+		this.literalLength = length;
+	}
+
+	/**
+	 * Get the number of chars in the template, not counting the variables.
+	 * @return The total length of the literals.
+	 */
+	int getTemplateLength() {
+		return literalLength;
+	}
+
+	/**
+	 * Get the literal segments of the render plan, e.g. to generate code which rebuilds it.
+	 * @return A copy of the literals.
+	 */
+	String[] getLiterals() {
+		return literals.clone();
+	}
+
+	/**
+	 * Get the slots of the render plan, e.g. to generate code which rebuilds it.
+	 * @return A copy of the slots.
+	 */
+	Slot[] getSlots() {
+		return slots.clone();
+	}
+
+	/**
+	 * Render the cow (without any message bubble) into the given StringBuilder.
+	 * @param face The face to apply to this cow.
+	 * @param thoughts The character/s to use for `$thoughts`.
+	 * @param sb The StringBuilder to append the cow to.
+	 */
+	public void render(final CowFace face, final String thoughts, final StringBuilder sb) {
+		sb.ensureCapacity(sb.length() + estimateLength(face.getEyes(), face.getTongue(), thoughts));
+		try {
+			render(face, thoughts, (Appendable) sb);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);  // StringBuilder does not throw IOException
+		}
+	}
+
+	/**
+	 * Render the cow (without any message bubble) to the given output, e.g. a Writer.
+	 * @param face The face to apply to this cow.
+	 * @param thoughts The character/s to use for `$thoughts`.
+	 * @param out Where to write the cow.
+	 * @throws IOException If writing fails.
+	 */
+	public void render(final CowFace face, final String thoughts, final Appendable out) throws IOException {
+		long start = RenderMetrics.start();
+		try {
+			String eyes = face.getEyes();
+			String tongue = face.getTongue();
+			out.append(literals[0]);
+			for (int i = 0; i < slots.length; i++) {
+				switch (slots[i]) {
+					case EYES:
+						out.append(eyes);
+						break;
+					case TONGUE:
+						out.append(tongue);
+						break;
+					default:
+						out.append(thoughts);
+						break;
+				}
+				out.append(literals[i + 1]);
+			}
+		} finally {
+			RenderMetrics.stop(RenderMetrics.Stage.BODY, start);
+		}
+	}
+
+	/**
+	 * Render the cow (without any message bubble).
+	 * @param face The face to apply to this cow.
+	 * @param thoughts The character/s to use for `$thoughts`.
+	 * @return The formatted cow.
+	 */
+	public String render(final CowFace face, final String thoughts) {
+		StringBuilder sb = new StringBuilder(estimateLength(face.getEyes(), face.getTongue(), thoughts));
+		render(face, thoughts, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Get the cow (without any message bubble) rendered and encoded as UTF-8, it is encoded the first time it is needed.
+	 * Only the fixed faces are kept, any other face would render just once so it is not worth keeping.
+	 * @param face The face to apply to this cow.
+	 * @param thoughts The character/s to use for `$thoughts`.
+	 * @return The encoded cow, which must not be modified, or null if the face is not one of the fixed faces.
+	 */
+	byte[] getEncoded(final CowFace face, final String thoughts) {
+		String mode = CowFace.getFixedMode(face);
+		if (mode == null) {
+			return null;
+		}
+		String key = mode + ':' + thoughts;
+		byte[] result = encoded.get(key);
+		if (result == null) {
+			// racing threads may both encode, the results are equal so whichever wins is fine
+			result = render(face, thoughts).getBytes(UTF8);
+			byte[] previous = encoded.putIfAbsent(key, result);
+			if (previous != null) {
+				result = previous;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Works out the exact length of the rendered cow for the given slot values.
+	 * @param eyes The eyes which will be rendered.
+	 * @param tongue The tongue which will be rendered.
+	 * @param thoughts The thoughts which will be rendered.
+	 * @return The number of characters the rendered cow will contain.
+	 */
+	private int estimateLength(final String eyes, final String tongue, final String thoughts) {
+		int length = literalLength;
+		for (Slot slot : slots) {
+			switch (slot) {
+				case EYES:
+					length += eyes.length();
+					break;
+				case TONGUE:
+					length += tongue.length();
+					break;
+				default:
+					length += thoughts.length();
+					break;
+			}
+		}
+		return length;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CompiledCow)) {
+			return false;
+		}
+		CompiledCow other = (CompiledCow) obj;
+		return Arrays.equals(literals, other.literals) && Arrays.equals(slots, other.slots);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * Arrays.hashCode(literals) + Arrays.hashCode(slots);
+	}
+}
@@ -0,0 +1,35 @@
+package com.github.hhiroshell.cowsay;
+
+/**
+ * Guards the Java Flight Recorder events, {@link CowLoadEvent} and {@link CowRenderEvent}.
+ *
+ * Cowsay is built for Java 8 and the jdk.jfr API is missing from older Java 8 runtimes, so the event classes are
+ * only ever touched after checking {@link #AVAILABLE}, which this class works out without referring to them.
+ * Where JFR is available an event which is not being recorded costs a check of its enabled flag.
+ */
+final class CowEvents {
+	/**
+	 * true if the jdk.jfr API is present, so the events can be created.
+	 */
+	static final boolean AVAILABLE = isAvailable();
+
+	/**
+	 * Utility class does not need a constructor.
+	 */
+	private CowEvents() {
+
+	}
+
+	/**
+	 * Determine if the jdk.jfr API is present.
+	 * @return true if events can be created.
+	 */
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event", false, CowEvents.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError ex) {
+			return false;
+		}
+	}
+}
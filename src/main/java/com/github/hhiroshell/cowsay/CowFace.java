@@ -1,5 +1,6 @@
 package com.github.hhiroshell.cowsay;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -8,27 +9,40 @@ import java.util.Set;
  * Contains the variables used to build a cow face.
  * @author Rick Brown
  */
-public class CowFace {
+public final class CowFace {
 	/**
 	 * The various predefined modes built into cowsay, for example "borg" mode.
 	 */
-	public static final Map<String, CowFace> COW_MODES = new HashMap<String, CowFace>();
+	public static final Map<String, CowFace> COW_MODES;
+
+	/**
+	 * The faces which never vary, i.e. the default face and the mode faces, mapped to their mode ("" for the default).
+	 */
+	private static final Map<CowFace, String> FIXED_FACES;
 
 	private static final String DEFAULT_EYES = "oo";
 	private static final String DEFAULT_TONGUE = "  ";
 
-	private String eyes;  // they're watching you, they see your every move
-	private String tongue;
+	private final String eyes;  // they're watching you, they see your every move
+	private final String tongue;
 
 	static {
-		COW_MODES.put("b", new CowFace("=="));
-		COW_MODES.put("d", new CowFace("xx", "U "));
-		COW_MODES.put("g", new CowFace("$$"));
-		COW_MODES.put("p", new CowFace("@@"));
-		COW_MODES.put("s", new CowFace("**", "U "));
-		COW_MODES.put("t", new CowFace("--"));
-		COW_MODES.put("w", new CowFace("OO"));
-		COW_MODES.put("y", new CowFace(".."));
+		Map<String, CowFace> modes = new HashMap<String, CowFace>();
+		modes.put("b", new CowFace("=="));
+		modes.put("d", new CowFace("xx", "U "));
+		modes.put("g", new CowFace("$$"));
+		modes.put("p", new CowFace("@@"));
+		modes.put("s", new CowFace("**", "U "));
+		modes.put("t", new CowFace("--"));
+		modes.put("w", new CowFace("OO"));
+		modes.put("y", new CowFace(".."));
+		COW_MODES = Collections.unmodifiableMap(modes);
+		Map<CowFace, String> fixed = new HashMap<CowFace, String>();
+		fixed.put(new CowFace(), "");
+		for (Map.Entry<String, CowFace> mode : modes.entrySet()) {
+			fixed.put(mode.getValue(), mode.getKey());
+		}
+		FIXED_FACES = fixed;
 	}
 
 	/**
@@ -49,12 +63,12 @@ public class CowFace {
 
 	/**
 	 * Get a custom cow face!
-	 * @param eyes The two characters to use as eyes.
-	 * @param tongue The two characters to use as tongue.
+	 * @param eyes The eyes to use - if more than two characters long the first two will be used, if null or empty the default eyes.
+	 * @param tongue The tongue to use - if more than two characters long the first two will be used, if null or empty the default tongue.
 	 */
-	private CowFace(final String eyes, final String tongue) {
-		setEyes(eyes);
-		setTongue(tongue);
+	public CowFace(final String eyes, final String tongue) {
+		this.eyes = limit(eyes, DEFAULT_EYES);
+		this.tongue = limit(tongue, DEFAULT_TONGUE);
 	}
 
 	/**
@@ -86,31 +100,26 @@ public class CowFace {
 	}
 
 	/**
-	 * Set custom cow eyes.
-	 * @param eyes The eyes to use - if more than two characters long the first two will be used.
+	 * Get the mode which gives a face, so that work which depends only on the face can be shared.
+	 * Custom faces which happen to match a mode face (or the default face) are treated as that mode.
+	 * @param face The face.
+	 * @return The mode key, an empty string for the default face or null if this is not one of the fixed faces.
 	 */
-	public final void setEyes(final String eyes) {
-		if (eyes != null && eyes.length() > 0) {
-			if (eyes.length() > 2) {
-				this.eyes = eyes.substring(0, 2);
-			} else {
-				this.eyes = eyes;
-			}
-		}
+	static String getFixedMode(final CowFace face) {
+		return FIXED_FACES.get(face);
 	}
 
 	/**
-	 * Set custom cow tongue.
-	 * @param tongue The tongue to use - if more than two characters long the first two will be used.
+	 * Limits a part of the face to two characters.
+	 * @param value The requested eyes or tongue.
+	 * @param defaultValue What to use if nothing was requested.
+	 * @return The first two characters of the value, or the default value if it is null or empty.
 	 */
-	public final void setTongue(final String tongue) {
-		if (tongue != null && tongue.length() > 0) {
-			if (tongue.length() > 2) {
-				this.tongue = tongue.substring(0, 2);
-			} else {
-				this.tongue = tongue;
-			}
+	private static String limit(final String value, final String defaultValue) {
+		if (value == null || value.length() == 0) {
+			return defaultValue;
 		}
+		return value.length() > 2 ? value.substring(0, 2) : value;
 	}
 
 	/**
@@ -122,4 +131,21 @@ public class CowFace {
 		Set<String> modes = COW_MODES.keySet();
 		return modes.contains(mode);
 	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CowFace)) {
+			return false;
+		}
+		CowFace other = (CowFace) obj;
+		return eyes.equals(other.eyes) && tongue.equals(other.tongue);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * eyes.hashCode() + tongue.hashCode();
+	}
 }
@@ -1,5 +1,8 @@
 package com.github.hhiroshell.cowsay;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -10,7 +13,16 @@ import java.util.regex.Pattern;
  */
 public final class CowFormatter {
 
-	private static final Pattern COWSTART_RE = Pattern.compile(".*\\$the_cow\\s*=\\s*<<\"?EOC\"?;?", Pattern.DOTALL);
+	private static final Pattern COWSTART_RE = Pattern.compile("\\$the_cow\\s*=\\s*<<\"?EOC\"?;?");
+	private static final String EOC = "EOC";
+
+	/**
+	 * The variables which may appear in the ascii art, in the order they were historically substituted.
+	 */
+	private static final String[] SLOT_TOKENS = {"${tongue}", "$tongue", "$thoughts", "${eyes}", "$eyes"};
+	private static final CompiledCow.Slot[] SLOT_TYPES = {
+		CompiledCow.Slot.TONGUE, CompiledCow.Slot.TONGUE, CompiledCow.Slot.THOUGHTS, CompiledCow.Slot.EYES, CompiledCow.Slot.EYES
+	};
 
 	/**
 	 * Utility class does not need constructor.
@@ -26,16 +38,99 @@ public final class CowFormatter {
 	 * @throws CowParseException if the cowfile cannot be parsed.
 	 */
 	private static String extractCowTemplate(final String cow) throws CowParseException {
-
 		Matcher matcher = COWSTART_RE.matcher(cow);
-		if (matcher.find(0)) {
-			String result = matcher.replaceFirst("");
-			return result;
+		int start = -1;
+		while (matcher.find()) {
+			start = matcher.end();  // the last assignment wins, as it always has
+		}
+		if (start >= 0) {
+			return cow.substring(start);
 		} else {
 			throw new CowParseException("Could not parse cow " + cow);
 		}
 	}
 
+	/**
+	 * Removes the escaping PERL would have removed from the heredoc, i.e. "\\\\", "\\@" and "\\$".
+	 * @param template The ascii art portion of the cowfile.
+	 * @return The ascii art with escapes removed.
+	 */
+	private static String unescape(final String template) {
+		String result = template.replace("\\\\", "\\");  // do this first
+		result = result.replace("\\@", "@");
+		return result.replace("\\$", "$");
+	}
+
+	/**
+	 * Removes the closing EOC marker, and any whitespace after it, from the end of the ascii art.
+	 * @param template The ascii art portion of the cowfile.
+	 * @return The ascii art without the closing marker.
+	 */
+	private static String stripEoc(final String template) {
+		int end = template.length();
+		while (end > 0 && isRegexWhitespace(template.charAt(end - 1))) {
+			end--;
+		}
+		if (template.startsWith(EOC, end - EOC.length())) {
+			return template.substring(0, end - EOC.length());
+		}
+		return template;
+	}
+
+	/**
+	 * Matches the characters in the regular expression class "\\s".
+	 * @param c The character to test.
+	 * @return true if this character is whitespace.
+	 */
+	private static boolean isRegexWhitespace(final char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Parses the cow template (the raw content of a cowfile) into a render plan which can be reused for every render.
+	 * @param cow The content of a cowfile.
+	 * @return The compiled cow.
+	 * @throws CowParseException If the cow could not be parsed.
+	 */
+	public static CompiledCow compile(final String cow) throws CowParseException {
+		long start = RenderMetrics.start();
+		try {
+			return compileTemplate(stripEoc(unescape(extractCowTemplate(cow))));
+		} catch (CowParseException ex) {
+			RenderMetrics.parseError();
+			throw ex;
+		} finally {
+			RenderMetrics.stop(RenderMetrics.Stage.PARSE, start);
+		}
+	}
+
+	/**
+	 * Compiles the ascii art into a render plan, splitting it at each variable.
+	 * @param template The ascii art portion of the cowfile, unescaped.
+	 * @return The compiled cow.
+	 */
+	private static CompiledCow compileTemplate(final String template) {
+		List<String> literals = new ArrayList<String>();
+		List<CompiledCow.Slot> slots = new ArrayList<CompiledCow.Slot>();
+		int literalStart = 0;
+		int idx = template.indexOf('$');
+		while (idx >= 0) {
+			int next = idx + 1;
+			for (int i = 0; i < SLOT_TOKENS.length; i++) {
+				if (template.startsWith(SLOT_TOKENS[i], idx)) {
+					literals.add(template.substring(literalStart, idx));
+					slots.add(SLOT_TYPES[i]);
+					literalStart = idx + SLOT_TOKENS[i].length();
+					next = literalStart;
+					break;
+				}
+			}
+			idx = template.indexOf('$', next);
+		}
+		literals.add(template.substring(literalStart));
+		return new CompiledCow(literals.toArray(new String[literals.size()]), slots.toArray(new CompiledCow.Slot[slots.size()]));
+	}
+
 	/**
 	 * Processes the cow template (the raw content of a cowfile) inserting face and message as appropriate.
 	 * @param cow The content of a cowfile.
@@ -45,19 +140,95 @@ public final class CowFormatter {
 	 * @throws CowParseException If the cow could not be parsed.
 	 */
 	public static String formatCow(final String cow, final CowFace face, final Message message) throws CowParseException {
-		String result = extractCowTemplate(cow);
-		String tongue = face.getTongue();
-		String eyes = face.getEyes();
-		result = result.replaceAll("\\\\\\\\", "\\\\");  // do this first
-		result = result.replace("\\@", "@");
-		result = result.replace("\\$", "$");
-		result = result.replace("${tongue}", tongue);
-		result = result.replace("$tongue", tongue);
-		result = result.replace("$thoughts", message.getThoughts());
-		result = result.replace("${eyes}", eyes);  // sheep - doesn't help that i know zero perl
-		result = result.replace("$eyes", eyes);
-		result = result.replaceAll("EOC\\s*$", "");
-		result = message.getMessage() + result;
-		return result;
+		return formatCow(compile(cow), face, message);
+	}
+
+	/**
+	 * Renders a compiled cow inserting face and message as appropriate.
+	 * @param cow The compiled cow.
+	 * @param face The face to apply to this cow.
+	 * @param message The message the cow is saying or thinking.
+	 * @return The formatted cow.
+	 */
+	public static String formatCow(final CompiledCow cow, final CowFace face, final Message message) {
+		CowRenderEvent event = CowEvents.AVAILABLE ? CowRenderEvent.start(cow, message.getLength(), message.getWordwrap()) : null;
+		StringBuilder sb = new StringBuilder();
+		try {
+			message.appendMessage(sb);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);  // StringBuilder does not throw IOException
+		}
+		cow.render(face, message.getThoughts(), sb);
+		if (event != null) {
+			event.finish(sb.length());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Renders a compiled cow inserting face and message as appropriate, straight to the given output (e.g. a Writer)
+	 * so that the whole cow is never held in memory.
+	 * @param cow The compiled cow.
+	 * @param face The face to apply to this cow.
+	 * @param message The message the cow is saying or thinking.
+	 * @param out Where to write the formatted cow.
+	 * @throws IOException If writing fails.
+	 */
+	public static void formatCow(final CompiledCow cow, final CowFace face, final Message message, final Appendable out) throws IOException {
+		CowRenderEvent event = CowEvents.AVAILABLE ? CowRenderEvent.start(cow, message.getLength(), message.getWordwrap()) : null;
+		if (event == null) {
+			message.appendMessage(out);
+			cow.render(face, message.getThoughts(), out);
+			return;
+		}
+		Appendable counted = event.count(out);
+		try {
+			message.appendMessage(counted);
+			cow.render(face, message.getThoughts(), counted);
+		} finally {
+			event.finish();
+		}
+	}
+
+	/**
+	 * Renders a compiled cow with a bubble which has already been formatted, so the message is not wrapped again.
+	 * @param cow The compiled cow.
+	 * @param face The face to apply to this cow.
+	 * @param bubble The message the cow is saying or thinking, in its bubble.
+	 * @return The formatted cow.
+	 */
+	public static String formatCow(final CompiledCow cow, final CowFace face, final FormattedBubble bubble) {
+		CowRenderEvent event = CowEvents.AVAILABLE ? CowRenderEvent.start(cow, bubble.getBubble().length(), -1) : null;
+		StringBuilder sb = new StringBuilder(bubble.getBubble().length() + 256);
+		sb.append(bubble.getBubble());
+		cow.render(face, bubble.getThoughts(), sb);
+		if (event != null) {
+			event.finish(sb.length());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Renders a compiled cow with a bubble which has already been formatted, straight to the given output.
+	 * @param cow The compiled cow.
+	 * @param face The face to apply to this cow.
+	 * @param bubble The message the cow is saying or thinking, in its bubble.
+	 * @param out Where to write the formatted cow.
+	 * @throws IOException If writing fails.
+	 */
+	public static void formatCow(final CompiledCow cow, final CowFace face, final FormattedBubble bubble, final Appendable out) throws IOException {
+		CowRenderEvent event = CowEvents.AVAILABLE ? CowRenderEvent.start(cow, bubble.getBubble().length(), -1) : null;
+		if (event == null) {
+			bubble.appendTo(out);
+			cow.render(face, bubble.getThoughts(), out);
+			return;
+		}
+		Appendable counted = event.count(out);
+		try {
+			bubble.appendTo(counted);
+			cow.render(face, bubble.getThoughts(), counted);
+		} finally {
+			event.finish();
+		}
 	}
 }
@@ -0,0 +1,122 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Renders the same message from every available cow, e.g. to preview them all or build a gallery page.
+ *
+ * The bubble is the same for every cow so it is line-wrapped and drawn once, as a {@link FormattedBubble}.
+ * The cows are then loaded and rendered in parallel on the common fork-join pool and written in order of name,
+ * each under a line with its name.
+ * Cowfiles which cannot be parsed are logged and left out.
+ */
+public final class CowGallery {
+	private static final String NEWLINE = System.getProperty("line.separator");
+
+	private final RenderRequest request;
+	private final String separator;
+
+	/**
+	 * Create a gallery.
+	 * @param request What every cow says, its face, bubble and wrap; the cowfile is ignored.
+	 * @param separator Written between consecutive cows.
+	 */
+	public CowGallery(final RenderRequest request, final String separator) {
+		this.request = request;
+		this.separator = separator != null ? separator : "";
+	}
+
+	/**
+	 * Render every cow found by {@link Cowloader#listAllCowfiles()}.
+	 * @param out Where to write the cows, nothing is written if the message is empty.
+	 * @return The number of cows rendered.
+	 * @throws IOException If writing fails.
+	 */
+	public int run(final Appendable out) throws IOException {
+		return run(Cowloader.listAllCowfiles(), out);
+	}
+
+	/**
+	 * Render the given cows.
+	 * @param cowNames The names of the cows, they are written in this order.
+	 * @param out Where to write the cows, nothing is written if the message is empty.
+	 * @return The number of cows rendered.
+	 * @throws IOException If writing fails.
+	 */
+	int run(final String[] cowNames, final Appendable out) throws IOException {
+		if (request.getMessage().isEmpty()) {
+			return 0;
+		}
+		final FormattedBubble bubble = new Message(request.getMessage(), request.isThought(), request.getBubble(), request.getWordwrap()).format();
+		ExecutorService executor = ForkJoinPool.commonPool();
+		List<Future<String>> cows = new ArrayList<Future<String>>(cowNames.length);
+		for (final String cowName : cowNames) {
+			cows.add(executor.submit(new Callable<String>() {
+				@Override
+				public String call() {
+					return render(cowName, bubble);
+				}
+			}));
+		}
+		int count = 0;
+		for (Future<String> future : cows) {  // in the order of the names, whichever finished first
+			String cow = get(future);
+			if (cow != null) {
+				if (count > 0) {
+					out.append(separator);
+				}
+				out.append(cow);
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Wait for a cow to be rendered.
+	 * @param future The cow being rendered.
+	 * @return The rendered cow, or null if it was left out.
+	 * @throws InterruptedIOException If interrupted while waiting.
+	 */
+	private static String get(final Future<String> future) throws InterruptedIOException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while rendering the gallery");
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) ex.getCause();
+			}
+			throw new IllegalStateException(ex.getCause());
+		}
+	}
+
+	/**
+	 * Render one cow under its name.
+	 * @param cowName The name of the cow.
+	 * @param bubble The bubble, already drawn.
+	 * @return The cow's name, the bubble and the cow, or null if the cowfile could not be parsed.
+	 */
+	private String render(final String cowName, final FormattedBubble bubble) {
+		CompiledCow cow;
+		try {
+			cow = Cowloader.loadCompiled(cowName);
+		} catch (CowParseException ex) {
+			Logger.getLogger(CowGallery.class.getName()).log(Level.WARNING, "Skipping cow {0}: {1}",
+					new Object[]{cowName, ex.getMessage()});
+			return null;
+		}
+		return cowName + NEWLINE + CowFormatter.formatCow(cow, request.getFace(), bubble);
+	}
+}
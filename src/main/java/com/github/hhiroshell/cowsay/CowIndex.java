@@ -0,0 +1,201 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An index of the cowfiles found in the COWPATH directories.
+ * Each directory is listed once when the index is built, after which cowfiles are resolved by name with a single
+ * hash lookup instead of listing every directory again.
+ *
+ * When the same cowfile name appears in more than one directory the directory which comes first on the COWPATH wins.
+ *
+ * Optionally the directories can be {@link #watch() watched} so that cowfiles added, removed or replaced at runtime
+ * are picked up one entry at a time, without rescanning.
+ */
+public final class CowIndex implements Closeable {
+	private final List<File> directories;
+	private volatile Map<String, File> cowfiles;
+	private WatchService watchService = null;
+
+	/**
+	 * Build an index over the given directories.
+	 * @param directories The directories to index, in order of precedence.
+	 */
+	public CowIndex(final List<File> directories) {
+		this.directories = Collections.unmodifiableList(new ArrayList<File>(directories));
+		rescan();
+	}
+
+	/**
+	 * Build an index over the directories listed in a COWPATH.
+	 * @param cowPath The value of the COWPATH environment variable, may be null.
+	 * @return The index, which will be empty if there is no COWPATH.
+	 */
+	public static CowIndex fromCowPath(final String cowPath) {
+		List<File> directories = new ArrayList<File>();
+		if (cowPath != null) {
+			for (String path : cowPath.split(File.pathSeparator)) {
+				if (path.length() > 0) {
+					directories.add(new File(path));
+				}
+			}
+		}
+		return new CowIndex(directories);
+	}
+
+	/**
+	 * Get the directories covered by this index.
+	 * @return The indexed directories, in order of precedence.
+	 */
+	public List<File> getDirectories() {
+		return directories;
+	}
+
+	/**
+	 * Find a cowfile by name.
+	 * @param cowName The name of a cowfile including the extension, e.g. "sheep.cow".
+	 * @return The cowfile from the first directory containing it, or null if no directory does.
+	 */
+	public File resolve(final String cowName) {
+		return cowfiles.get(cowName);
+	}
+
+	/**
+	 * Get the names of all indexed cowfiles.
+	 * @return The cowfile names including the extension.
+	 */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(cowfiles.keySet());
+	}
+
+	/**
+	 * Lists every directory again and replaces the index.
+	 */
+	public synchronized void rescan() {
+		Map<String, File> result = new ConcurrentHashMap<String, File>();
+		for (File dir : directories) {
+			String[] names = dir.list();
+			if (names != null) {
+				for (String name : names) {
+					if (name.endsWith(Cowloader.COWFILE_EXT) && !result.containsKey(name)) {
+						result.put(name, new File(dir, name));
+					}
+				}
+			}
+		}
+		cowfiles = result;
+	}
+
+	/**
+	 * Updates the index entry for a single cowfile name, after it has been created, deleted or replaced.
+	 * Only the directories on the COWPATH are checked, none of them are listed.
+	 * @param cowName The name of the cowfile including the extension.
+	 */
+	synchronized void refresh(final String cowName) {
+		for (File dir : directories) {
+			File cowfile = new File(dir, cowName);
+			if (cowfile.exists()) {
+				cowfiles.put(cowName, cowfile);
+				return;
+			}
+		}
+		cowfiles.remove(cowName);
+	}
+
+	/**
+	 * Start watching the indexed directories for changes on a background daemon thread.
+	 * Calling this more than once has no further effect.
+	 * @throws IOException If the directories could not be watched.
+	 */
+	public synchronized void watch() throws IOException {
+		if (watchService != null) {
+			return;
+		}
+		final WatchService service = FileSystems.getDefault().newWatchService();
+		try {
+			for (File dir : directories) {
+				if (dir.isDirectory()) {
+					dir.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+							StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+				}
+			}
+		} catch (IOException ex) {
+			service.close();
+			throw ex;
+		}
+		Thread watcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				processEvents(service);
+			}
+		}, "cowsay-cowpath-watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+		watchService = service;
+		rescan();  // catch anything which changed before the watch was registered
+	}
+
+	/**
+	 * Determine if the directories are being watched for changes.
+	 * @return true if {@link #watch()} has been called and the index has not been closed.
+	 */
+	public synchronized boolean isWatching() {
+		return watchService != null;
+	}
+
+	/**
+	 * Stop watching the indexed directories, the index remains usable but will no longer be kept up to date.
+	 * @throws IOException If the watch service could not be closed.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+			watchService = null;
+		}
+	}
+
+	/**
+	 * Applies changes reported by the watch service to the index until the watch service is closed.
+	 * @param service The watch service to poll.
+	 */
+	private void processEvents(final WatchService service) {
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						rescan();  // we have missed events, nothing for it but to start again
+					} else {
+						String name = ((Path) event.context()).getFileName().toString();
+						if (name.endsWith(Cowloader.COWFILE_EXT)) {
+							refresh(name);
+						}
+					}
+				}
+				key.reset();
+			}
+		} catch (ClosedWatchServiceException ex) {
+			// closed, time to stop
+		} catch (InterruptedException ex) {
+			Logger.getLogger(CowIndex.class.getName()).log(Level.WARNING, null, ex);
+		}
+	}
+}
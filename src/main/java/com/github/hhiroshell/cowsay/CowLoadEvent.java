@@ -0,0 +1,93 @@
+package com.github.hhiroshell.cowsay;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for resolving and loading a cowfile, see {@link Cowloader#load(String)}.
+ * Only create one after checking {@link CowEvents#AVAILABLE}.
+ */
+@Name("com.github.hhiroshell.cowsay.CowLoad")
+@Label("Cow Load")
+@Category("Cowsay")
+@Description("Resolving a cowfile and loading it, from the cowfile cache if possible")
+@StackTrace(false)
+final class CowLoadEvent extends jdk.jfr.Event {
+	/**
+	 * Where a cowfile came from, as given by a path on the commandline.
+	 */
+	static final String PATH = "path";
+
+	/**
+	 * Where a cowfile came from, as found on the COWPATH.
+	 */
+	static final String COWPATH = "COWPATH";
+
+	/**
+	 * Where a cowfile came from, as bundled with cowsay.
+	 */
+	static final String BUNDLED = "bundled";
+
+	@Label("Cow Name")
+	@Description("The cowfile spec, as given to -f")
+	String cowName;
+
+	@Label("Source")
+	@Description("Where the cowfile was found: path, COWPATH or bundled")
+	String source;
+
+	@Label("Cached")
+	@Description("true if the cowfile came from the cowfile cache")
+	boolean cached;
+
+	@Label("Bytes Read")
+	@DataAmount
+	long bytesRead;
+
+	/**
+	 * Start timing a load, if the event is being recorded.
+	 * @param cowfileSpec The cowfile spec.
+	 * @return The started event, or null if it is not being recorded.
+	 */
+	static CowLoadEvent start(final String cowfileSpec) {
+		CowLoadEvent event = new CowLoadEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.cowName = cowfileSpec;
+		event.cached = true;  // until something is read
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Record that a cowfile was resolved.
+	 * @param resolvedSource Where the cowfile came from.
+	 */
+	void resolved(final String resolvedSource) {
+		this.source = resolvedSource;
+	}
+
+	/**
+	 * Record that a cowfile was read rather than found in the cache.
+	 * @param bytes The number of bytes read.
+	 */
+	void read(final long bytes) {
+		this.cached = false;
+		this.bytesRead = bytes;
+	}
+
+	/**
+	 * Finish timing the load and commit the event if it passes the recording's threshold.
+	 */
+	void finish() {
+		end();
+		if (shouldCommit()) {
+			commit();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for rendering a cow, whether it is formatted, see
+ * {@link CowFormatter#formatCow(CompiledCow, CowFace, Message, Appendable)}, or served by {@link CowRenderer}
+ * from the render cache or the cow's pre-encoded bytes.
+ * Only create one after checking {@link CowEvents#AVAILABLE}.
+ */
+@Name("com.github.hhiroshell.cowsay.CowRender")
+@Label("Cow Render")
+@Category("Cowsay")
+@Description("Rendering a cow: drawing the bubble and the cow, or serving them already rendered")
+@StackTrace(false)
+final class CowRenderEvent extends jdk.jfr.Event {
+	/**
+	 * How a cow was rendered, the bubble and the cow were drawn.
+	 */
+	static final String FORMATTED = "formatted";
+
+	/**
+	 * How a cow was rendered, it came from the render cache.
+	 */
+	static final String CACHED = "cached";
+
+	/**
+	 * How a cow was rendered, only the bubble was drawn and the cow was already encoded.
+	 */
+	static final String PRE_ENCODED = "pre-encoded";
+
+	@Label("Output")
+	@Description("How the cow was rendered: formatted, cached or pre-encoded")
+	String output;
+
+	@Label("Template Size")
+	@Description("The number of chars in the cow's template, not counting the variables")
+	int templateSize;
+
+	@Label("Message Length")
+	@Description("The number of chars in the message, or in the bubble if it was already formatted")
+	int messageLength;
+
+	@Label("Wrap Width")
+	@Description("Where the message was line-wrapped, zero if it was not, -1 if it was already formatted")
+	int wordwrap;
+
+	@Label("Output Size")
+	@Description("The number of chars written, zero if the cow was written as bytes")
+	long outputSize;
+
+	@Label("Output Bytes")
+	@Description("The number of UTF-8 bytes written, zero if the cow was written as chars")
+	@DataAmount
+	long outputBytes;
+
+	/**
+	 * Start timing a render which formats the cow, if the event is being recorded.
+	 * @param cow The compiled cow.
+	 * @param messageLength The length of the message.
+	 * @param wordwrap The wrap width.
+	 * @return The started event, or null if it is not being recorded.
+	 */
+	static CowRenderEvent start(final CompiledCow cow, final int messageLength, final int wordwrap) {
+		return start(cow, messageLength, wordwrap, FORMATTED);
+	}
+
+	/**
+	 * Start timing a render, if the event is being recorded.
+	 * @param cow The compiled cow.
+	 * @param messageLength The length of the message.
+	 * @param wordwrap The wrap width.
+	 * @param output How the cow is rendered: {@link #FORMATTED}, {@link #CACHED} or {@link #PRE_ENCODED}.
+	 * @return The started event, or null if it is not being recorded.
+	 */
+	static CowRenderEvent start(final CompiledCow cow, final int messageLength, final int wordwrap, final String output) {
+		CowRenderEvent event = new CowRenderEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.output = output;
+		event.templateSize = cow.getTemplateLength();
+		event.messageLength = messageLength;
+		event.wordwrap = wordwrap;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Wrap the output so that the chars written are counted.
+	 * @param out Where the cow is written.
+	 * @return An Appendable which writes to out.
+	 */
+	Appendable count(final Appendable out) {
+		return new Appendable() {
+			@Override
+			public Appendable append(final CharSequence csq) throws IOException {
+				String s = String.valueOf(csq);
+				outputSize += s.length();
+				out.append(s);
+				return this;
+			}
+
+			@Override
+			public Appendable append(final CharSequence csq, final int start, final int end) throws IOException {
+				outputSize += end - start;
+				out.append(csq, start, end);
+				return this;
+			}
+
+			@Override
+			public Appendable append(final char c) throws IOException {
+				outputSize++;
+				out.append(c);
+				return this;
+			}
+		};
+	}
+
+	/**
+	 * Finish timing the render and commit the event if it passes the recording's threshold.
+	 * @param written The number of chars written.
+	 */
+	void finish(final long written) {
+		this.outputSize = written;
+		finish();
+	}
+
+	/**
+	 * Finish timing a render which was written as bytes and commit the event if it passes the recording's threshold.
+	 * @param buffers The encoded cow, as it is about to be written.
+	 */
+	void finishEncoded(final ByteBuffer[] buffers) {
+		for (ByteBuffer buffer : buffers) {
+			outputBytes += buffer.remaining();
+		}
+		finish();
+	}
+
+	/**
+	 * Finish timing the render, after writing through {@link #count(Appendable)},
+	 * and commit the event if it passes the recording's threshold.
+	 */
+	void finish() {
+		end();
+		if (shouldCommit()) {
+			commit();
+		}
+	}
+}
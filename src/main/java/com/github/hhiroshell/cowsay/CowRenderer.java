@@ -0,0 +1,304 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Renders cows for {@link RenderRequest}s.
+ *
+ * The renderer holds no state of its own, so any number of threads may render at once: cowfiles come from the
+ * Cowloader's cache, which does not lock on lookups, the compiled templates and faces are immutable,
+ * and each thread line-wraps with its own scratch space.
+ *
+ * Cows may be rendered as a String or written straight to an Appendable (e.g. a Writer) or a byte channel,
+ * in which case the whole cow is never held in memory.
+ * When the cow has one of the fixed faces only the bubble is encoded for a byte channel,
+ * the cow itself is already encoded and both are written together in a single gathering write.
+ *
+ * In the server and batch modes, see {@link #enableCache()}, or if the {@link RenderCache#MAX_WEIGHT_PROPERTY}
+ * system property is set, short messages are rendered once and then served from the {@link RenderCache}.
+ */
+public final class CowRenderer {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int CHANNEL_BUFFER_SIZE = 8192;
+	private static volatile RenderCache cache = RenderCache.fromSystemProperties(RenderCache.DEFAULT_MAX_WEIGHT);
+
+	/**
+	 * Utility class does not need a constructor.
+	 */
+	private CowRenderer() {
+
+	}
+
+	/**
+	 * Get the cache of rendered cows, mainly so that its counters can be inspected.
+	 * @return The render cache.
+	 */
+	public static RenderCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Turn on the render cache for a long-running process which may render the same cows again and again,
+	 * sized at {@link RenderCache#LONG_RUNNING_MAX_WEIGHT} unless the system property says otherwise.
+	 * Nothing changes if the cache is already on.
+	 */
+	static synchronized void enableCache() {
+		if (cache.getMaxWeight() == 0) {
+			cache = RenderCache.fromSystemProperties(RenderCache.LONG_RUNNING_MAX_WEIGHT);
+		}
+	}
+
+	/**
+	 * Put the render cache back as it was at startup, off unless the system property says otherwise, e.g. after a test.
+	 */
+	static synchronized void resetCache() {
+		cache = RenderCache.fromSystemProperties(RenderCache.DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * Render a cow.
+	 * @param request What to render.
+	 * @return The cow saying the message, or an empty string if the message is empty.
+	 * @throws CowParseException If the cowfile could not be parsed.
+	 */
+	public static String render(final RenderRequest request) throws CowParseException {
+		StringBuilder sb = new StringBuilder();
+		try {
+			render(request, sb);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);  // StringBuilder does not throw IOException
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Render a cow to the given output, e.g. a Writer.
+	 * The cowfile is loaded before anything is written so nothing is written if it cannot be parsed.
+	 * @param request What to render.
+	 * @param out Where to write the cow, nothing is written if the message is empty.
+	 * @throws CowParseException If the cowfile could not be parsed.
+	 * @throws IOException If writing the cow fails.
+	 */
+	public static void render(final RenderRequest request, final Appendable out) throws CowParseException, IOException {
+		if (!request.getMessage().isEmpty()) {
+			render(Cowloader.loadCompiled(request.getCowfile()), request, out);
+		}
+	}
+
+	/**
+	 * Render a cow to the given channel, encoded as UTF-8.
+	 * The channel is not closed.
+	 * @param request What to render.
+	 * @param channel Where to write the cow, nothing is written if the message is empty.
+	 * @throws CowParseException If the cowfile could not be parsed.
+	 * @throws IOException If writing the cow fails.
+	 */
+	public static void render(final RenderRequest request, final WritableByteChannel channel) throws CowParseException, IOException {
+		if (!request.getMessage().isEmpty()) {
+			render(Cowloader.loadCompiled(request.getCowfile()), request, channel);
+		}
+	}
+
+	/**
+	 * Render a cow from a template which has already been loaded.
+	 * @param cow The cow to render.
+	 * @param request What to render, the cowfile is ignored.
+	 * @param out Where to write the cow.
+	 * @throws IOException If writing the cow fails.
+	 */
+	static void render(final CompiledCow cow, final RenderRequest request, final Appendable out) throws IOException {
+		long start = RenderMetrics.start();
+		try {
+			renderCached(cow, request, out);
+		} finally {
+			RenderMetrics.stop(RenderMetrics.Stage.RENDER, start);
+		}
+	}
+
+	/**
+	 * Render a cow from the render cache if it is there, otherwise render it and offer it to the cache.
+	 * @param cow The cow to render.
+	 * @param request What to render, the cowfile is ignored.
+	 * @param out Where to write the cow.
+	 * @throws IOException If writing the cow fails.
+	 */
+	private static void renderCached(final CompiledCow cow, final RenderRequest request, final Appendable out) throws IOException {
+		RenderCache cache = CowRenderer.cache;
+		if (!cache.accepts(request)) {
+			CowFormatter.formatCow(cow, request.getFace(), toMessage(request), out);
+			return;
+		}
+		CowRenderEvent event = startEvent(cow, request, CowRenderEvent.CACHED);
+		byte[] cached = cache.get(cow, request);
+		if (cached != null) {
+			String rendered = new String(cached, UTF8);
+			out.append(rendered);
+			if (event != null) {
+				event.finish(rendered.length());
+			}
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		CowFormatter.formatCow(cow, request.getFace(), toMessage(request), sb);
+		String rendered = sb.toString();
+		out.append(rendered);
+		cache.put(cow, request, ByteBuffer.wrap(rendered.getBytes(UTF8)));
+	}
+
+	/**
+	 * Render a cow from a template which has already been loaded to the given channel, encoded as UTF-8.
+	 * The channel is not closed.
+	 * @param cow The cow to render.
+	 * @param request What to render, the cowfile is ignored.
+	 * @param channel Where to write the cow.
+	 * @throws IOException If writing the cow fails.
+	 */
+	static void render(final CompiledCow cow, final RenderRequest request, final WritableByteChannel channel) throws IOException {
+		ByteBuffer[] encoded = encode(cow, request);
+		if (encoded != null) {
+			write(channel, encoded);
+		} else {
+			stream(cow, request, channel);
+		}
+	}
+
+	/**
+	 * Render a cow to the given channel as it is rendered, for when {@link #encode(CompiledCow, RenderRequest)}
+	 * returned null; the cache and pre-encoded bytes are not tried again.
+	 * The channel is not closed.
+	 * @param cow The cow to render.
+	 * @param request What to render, the cowfile is ignored.
+	 * @param channel Where to write the cow.
+	 * @throws IOException If writing the cow fails.
+	 */
+	static void stream(final CompiledCow cow, final RenderRequest request, final WritableByteChannel channel) throws IOException {
+		Writer writer = Channels.newWriter(channel, UTF8.newEncoder(), CHANNEL_BUFFER_SIZE);
+		render(cow, request, writer);
+		writer.flush();  // closing the writer would close the channel
+	}
+
+	/**
+	 * Encode a cow as UTF-8, from the render cache or using the cow's pre-encoded bytes.
+	 * A short message is always encoded, since it is rendered in memory to be cached anyway.
+	 * @param cow The cow to render.
+	 * @param request What to render, the cowfile is ignored.
+	 * @return The encoded cow in one or more parts, or null if the message is too long to cache
+	 * and the cow has no pre-encoded bytes for the face, in which case render it with
+	 * {@link #stream(CompiledCow, RenderRequest, WritableByteChannel)}.
+	 */
+	static ByteBuffer[] encode(final CompiledCow cow, final RenderRequest request) {
+		long start = RenderMetrics.start();
+		ByteBuffer[] encoded = encodeCached(cow, request);
+		if (encoded != null) {
+			RenderMetrics.stop(RenderMetrics.Stage.RENDER, start);  // otherwise the render is timed when it is streamed
+		}
+		return encoded;
+	}
+
+	/**
+	 * Encode a cow from the render cache if it is there, otherwise render it and offer it to the cache.
+	 * @param cow The cow to render.
+	 * @param request What to render, the cowfile is ignored.
+	 * @return The encoded cow in one or more parts, or null if it is neither cacheable nor pre-encoded.
+	 */
+	private static ByteBuffer[] encodeCached(final CompiledCow cow, final RenderRequest request) {
+		RenderCache cache = CowRenderer.cache;
+		if (!cache.accepts(request)) {
+			return encodeFixed(cow, request);
+		}
+		CowRenderEvent event = startEvent(cow, request, CowRenderEvent.CACHED);
+		byte[] cached = cache.get(cow, request);
+		if (cached != null) {
+			ByteBuffer[] encoded = new ByteBuffer[]{ByteBuffer.wrap(cached)};
+			if (event != null) {
+				event.finishEncoded(encoded);
+			}
+			return encoded;
+		}
+		ByteBuffer[] encoded = encodeFixed(cow, request);
+		if (encoded == null) {
+			StringBuilder sb = new StringBuilder();
+			try {
+				CowFormatter.formatCow(cow, request.getFace(), toMessage(request), sb);
+			} catch (IOException ex) {
+				throw new IllegalStateException(ex);  // StringBuilder does not throw IOException
+			}
+			encoded = new ByteBuffer[]{ByteBuffer.wrap(sb.toString().getBytes(UTF8))};
+		}
+		cache.put(cow, request, encoded);
+		return encoded;
+	}
+
+	/**
+	 * Encode a cow as UTF-8 using the cow's pre-encoded bytes.
+	 * @param cow The cow to render.
+	 * @param request What to render, the cowfile is ignored.
+	 * @return The encoded bubble followed by the encoded cow, or null if the cow has no pre-encoded bytes for the face.
+	 */
+	private static ByteBuffer[] encodeFixed(final CompiledCow cow, final RenderRequest request) {
+		if (CowFace.getFixedMode(request.getFace()) == null) {
+			return null;
+		}
+		CowRenderEvent event = startEvent(cow, request, CowRenderEvent.PRE_ENCODED);
+		byte[] body = cow.getEncoded(request.getFace(), Message.getThoughts(request.isThought()));
+		ByteBuffer[] encoded = new ByteBuffer[]{ByteBuffer.wrap(toMessage(request).format().getEncoded()), ByteBuffer.wrap(body)};
+		if (event != null) {
+			event.finishEncoded(encoded);
+		}
+		return encoded;
+	}
+
+	/**
+	 * Start a flight recorder event for a cow which is not formatted by {@link CowFormatter}, which records its own.
+	 * @param cow The cow to render.
+	 * @param request What to render.
+	 * @param output How the cow is rendered.
+	 * @return The started event, or null if flight recorder events are unavailable or not being recorded.
+	 */
+	private static CowRenderEvent startEvent(final CompiledCow cow, final RenderRequest request, final String output) {
+		if (!CowEvents.AVAILABLE) {
+			return null;
+		}
+		int wordwrap = request.getWordwrap() >= 0 ? request.getWordwrap() : Message.DEFAULT_WRAP;
+		return CowRenderEvent.start(cow, request.getMessage().length(), wordwrap, output);
+	}
+
+	/**
+	 * Write all the buffers to the channel, in a single gathering write if the channel supports it.
+	 * @param channel Where to write the buffers.
+	 * @param buffers What to write, in order.
+	 * @throws IOException If writing fails.
+	 */
+	static void write(final WritableByteChannel channel, final ByteBuffer[] buffers) throws IOException {
+		if (channel instanceof GatheringByteChannel) {
+			long remaining = 0;
+			for (ByteBuffer buffer : buffers) {
+				remaining += buffer.remaining();
+			}
+			while (remaining > 0) {
+				remaining -= ((GatheringByteChannel) channel).write(buffers);
+			}
+		} else {
+			for (ByteBuffer buffer : buffers) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Build the message for a request.
+	 * @param request The request.
+	 * @return The message to put in the bubble.
+	 */
+	private static Message toMessage(final RenderRequest request) {
+		return new Message(request.getMessage(), request.isThought(), request.getBubble(), request.getWordwrap());
+	}
+}
@@ -0,0 +1,279 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A size-bounded, least-recently-used cache of loaded cowfiles and their compiled templates.
+ * Entries are keyed by the resolved identity of the cowfile (e.g. the bundled resource name, or a file path plus
+ * its modification time) and weighted by the approximate number of bytes they retain.
+ *
+ * Hit, miss and eviction counters are exposed so that the cache can be sized sensibly.
+ *
+ * Lookups take no locks, so many threads can render at once: each hit stamps its entry from a shared clock and only
+ * adding an entry, which must find the least recently used entries to evict, is synchronized.
+ */
+public final class CowfileCache {
+	/**
+	 * The system property which can be used to override the maximum weight, in bytes, of the cache.
+	 */
+	public static final String MAX_WEIGHT_PROPERTY = "cowsay.cache.maxBytes";
+
+	/**
+	 * The default maximum weight of the cache, comfortably larger than all the bundled cowfiles.
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = 1024 * 1024;
+
+	private final long maxWeight;
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>(64);
+	private final AtomicLong clock = new AtomicLong();  // orders accesses, for least recently used eviction
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private long weight = 0;
+	private long evictions = 0;
+
+	/**
+	 * Create a cache.
+	 * @param maxWeight The maximum number of bytes the cache may retain, zero disables caching.
+	 */
+	public CowfileCache(final long maxWeight) {
+		this.maxWeight = Math.max(0, maxWeight);
+	}
+
+	/**
+	 * Create a cache sized according to the {@link #MAX_WEIGHT_PROPERTY} system property.
+	 * @return A new cache.
+	 */
+	static CowfileCache fromSystemProperties() {
+		return new CowfileCache(Long.getLong(MAX_WEIGHT_PROPERTY, DEFAULT_MAX_WEIGHT));
+	}
+
+	/**
+	 * Look up a cowfile by its resolved identity.
+	 * @param key The resolved identity of the cowfile.
+	 * @return The cached entry or null if it is not cached.
+	 */
+	Entry get(final String key) {
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			entry.lastAccess = clock.incrementAndGet();
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+		return entry;
+	}
+
+	/**
+	 * Add a freshly loaded cowfile to the cache, evicting the least recently used entries if necessary.
+	 * @param key The resolved identity of the cowfile.
+	 * @param content The raw content of the cowfile.
+	 * @return The entry, which will not be retained if it is larger than the cache.
+	 */
+	synchronized Entry put(final String key, final String content) {
+		return put(key, new Entry(content, null));
+	}
+
+	/**
+	 * Add a cowfile which was compiled at build time to the cache, evicting the least recently used entries if necessary.
+	 * @param key The resolved identity of the cowfile.
+	 * @param compiled The compiled template of the cowfile.
+	 * @param resource The classpath resource to read the raw content from, if it is ever asked for.
+	 * @return The entry, which will not be retained if it is larger than the cache.
+	 */
+	synchronized Entry put(final String key, final CompiledCow compiled, final String resource) {
+		return put(key, new Entry(compiled, resource));
+	}
+
+	/**
+	 * Add an entry to the cache, evicting the least recently used entries if necessary, the caller must hold the lock.
+	 * @param key The resolved identity of the cowfile.
+	 * @param entry The new entry.
+	 * @return The entry, which will not be retained if it is larger than the cache.
+	 */
+	private Entry put(final String key, final Entry entry) {
+		if (entry.getWeight() > maxWeight) {
+			return entry;
+		}
+		entry.lastAccess = clock.incrementAndGet();
+		Entry previous = entries.put(key, entry);
+		if (previous != null) {
+			weight -= previous.getWeight();
+		}
+		weight += entry.getWeight();
+		while (weight > maxWeight) {
+			evictEldest();
+		}
+		return entry;
+	}
+
+	/**
+	 * Evicts the least recently used entry, the caller must hold the lock.
+	 * Cowfiles are few and large so a scan is cheaper than maintaining an access order on every lookup.
+	 */
+	private void evictEldest() {
+		Map.Entry<String, Entry> eldest = null;
+		for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+			if (eldest == null || candidate.getValue().lastAccess < eldest.getValue().lastAccess) {
+				eldest = candidate;
+			}
+		}
+		entries.remove(eldest.getKey());
+		weight -= eldest.getValue().getWeight();
+		evictions++;
+	}
+
+	/**
+	 * Remove all entries from the cache, the counters are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Get the number of lookups which found a cached cowfile.
+	 * @return The hit count.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of lookups which did not find a cached cowfile.
+	 * @return The miss count.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Get the number of entries which have been evicted to keep the cache within its maximum weight.
+	 * @return The eviction count.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Get the number of cowfiles currently cached.
+	 * @return The entry count.
+	 */
+	public int getSize() {
+		return entries.size();
+	}
+
+	/**
+	 * Get the approximate number of bytes currently retained by the cache.
+	 * @return The current weight.
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Get the maximum number of bytes the cache may retain.
+	 * @return The maximum weight.
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * Summarizes the cache's effectiveness and memory use, e.g. for logging.
+	 * @return The counters, size and weight.
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "Cowfile cache: %d hits, %d misses, %d evicted, %d cowfiles in %d of %d bytes",
+				getHits(), getMisses(), getEvictions(), getSize(), getWeight(), getMaxWeight());
+	}
+
+	/**
+	 * A cached cowfile, its compiled template is built the first time it is needed.
+	 * A cowfile compiled at build time starts with only its template, its content is read the first time it is needed.
+	 */
+	static final class Entry {
+		private volatile String content;
+		private volatile CompiledCow compiled;
+		private final String resource;
+		private final long weight;
+		private volatile long lastAccess;  // stamped from the cache's clock on every hit
+
+		/**
+		 * Create an entry for a freshly loaded cowfile.
+		 * @param content The raw content of the cowfile.
+		 * @param compiled The compiled template, or null to compile it the first time it is needed.
+		 */
+		Entry(final String content, final CompiledCow compiled) {
+			this.content = content;
+			this.compiled = compiled;
+			this.resource = null;
+			this.weight = 4L * content.length();
+		}
+
+		/**
+		 * Create an entry for a cowfile compiled at build time.
+		 * @param compiled The compiled template.
+		 * @param resource The classpath resource to read the raw content from the first time it is needed.
+		 */
+		Entry(final CompiledCow compiled, final String resource) {
+			this.content = null;
+			this.compiled = compiled;
+			this.resource = resource;
+			this.weight = 4L * compiled.getTemplateLength();
+		}
+
+		/**
+		 * Get the raw content of the cowfile, reading it if this is the first request.
+		 * @return The cowfile content, or null if it could not be read.
+		 */
+		String getContent() {
+			String result = content;
+			if (result == null && resource != null) {
+				// racing threads may both read, the results are equal so whichever wins is fine
+				InputStream in = Entry.class.getResourceAsStream(resource);
+				if (in != null) {
+					try {
+						result = CowfileReader.read(in);
+						content = result;
+					} catch (IOException ex) {
+						Logger.getLogger(CowfileCache.class.getName()).log(Level.SEVERE, null, ex);
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Get the compiled template, compiling it if this is the first request.
+		 * @return The compiled cow.
+		 * @throws CowParseException If the cowfile could not be parsed.
+		 */
+		CompiledCow getCompiled() throws CowParseException {
+			CompiledCow result = compiled;
+			if (result == null) {
+				// racing threads may both compile, the results are equivalent so whichever wins is fine
+				result = CowFormatter.compile(getContent());
+				compiled = result;
+			}
+			return result;
+		}
+
+		/**
+		 * Approximate retained size: the raw content plus the compiled literals, at two bytes per char.
+		 * For a cowfile compiled at build time the content is not counted until read, so its template counts twice.
+		 * @return The weight of this entry in bytes.
+		 */
+		long getWeight() {
+			return weight;
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads cowfiles with NIO, always as UTF-8 whatever the platform's default charset, just as the bundled cows are read
+ * at build time. The bytes are decoded in chunks straight into the content, no intermediate line strings are built,
+ * and every line break, whether "\n", "\r\n" or "\r", becomes the platform line separator, with one added after
+ * the last line if it has none. Malformed input is replaced rather than rejected, as a Reader would.
+ *
+ * Cowfiles up to {@link #MAP_THRESHOLD} bytes are read into a buffer, larger ones are memory-mapped so that big
+ * custom cowfiles on shared volumes are decoded straight from the page cache without being copied first.
+ */
+final class CowfileReader {
+	/**
+	 * The size in bytes above which cowfiles are memory-mapped rather than read, mapping small files costs more than
+	 * it saves.
+	 */
+	static final long MAP_THRESHOLD = 256 * 1024;
+
+	private static final int CHUNK_SIZE = 8192;
+	private static final String NEWLINE = System.getProperty("line.separator");
+
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+	private final StringBuilder content;
+	private boolean afterCarriageReturn = false;  // the last char was "\r", so a following "\n" is part of the same break
+	private boolean lineOpen = false;  // there are chars since the last line break
+
+	/**
+	 * Create a reader for one cowfile.
+	 * @param size The expected size of the cowfile in bytes, for sizing the content.
+	 */
+	private CowfileReader(final long size) {
+		this.content = new StringBuilder((int) Math.min(Math.max(size, 16), Integer.MAX_VALUE - 8));
+	}
+
+	/**
+	 * Read a cowfile from the filesystem.
+	 * @param cowfile The cowfile.
+	 * @return The content of the cowfile, with platform line breaks.
+	 * @throws IOException If the cowfile cannot be read.
+	 */
+	static String read(final File cowfile) throws IOException {
+		return read(cowfile, MAP_THRESHOLD);
+	}
+
+	/**
+	 * Read a cowfile from the filesystem, memory-mapping it if it is larger than the given size.
+	 * @param cowfile The cowfile.
+	 * @param mapThreshold The size in bytes above which the cowfile is memory-mapped.
+	 * @return The content of the cowfile, with platform line breaks.
+	 * @throws IOException If the cowfile cannot be read.
+	 */
+	static String read(final File cowfile, final long mapThreshold) throws IOException {
+		FileChannel channel = FileChannel.open(cowfile.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			CowfileReader reader = new CowfileReader(size);
+			if (size > mapThreshold) {
+				reader.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), true);
+				return reader.finish();
+			}
+			return reader.readFully(channel);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Read a cowfile from a stream, e.g. a classpath resource. The stream is closed, even if reading fails.
+	 * @param cowInputStream The stream.
+	 * @return The content of the cowfile, with platform line breaks.
+	 * @throws IOException If the stream cannot be read.
+	 */
+	static String read(final InputStream cowInputStream) throws IOException {
+		ReadableByteChannel channel = Channels.newChannel(cowInputStream);
+		try {
+			return new CowfileReader(CHUNK_SIZE).readFully(channel);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Read and decode everything left in a channel, a chunk at a time.
+	 * @param channel The channel.
+	 * @return The content, with platform line breaks.
+	 * @throws IOException If the channel cannot be read.
+	 */
+	private String readFully(final ReadableByteChannel channel) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+		while (channel.read(bytes) >= 0) {
+			bytes.flip();
+			decode(bytes, false);
+			bytes.compact();  // keeps the start of a character split across reads
+		}
+		bytes.flip();
+		decode(bytes, true);
+		return finish();
+	}
+
+	/**
+	 * Decode bytes into the content.
+	 * @param bytes The bytes to decode, a partial character at the end is left in the buffer unless this is the end.
+	 * @param endOfInput true if there are no more bytes to come.
+	 */
+	private void decode(final ByteBuffer bytes, final boolean endOfInput) {
+		while (true) {
+			CoderResult result = decoder.decode(bytes, chars, endOfInput);
+			drain();
+			if (!result.isOverflow()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Flush the decoder and finish the last line.
+	 * @return The content.
+	 */
+	private String finish() {
+		while (decoder.flush(chars).isOverflow()) {
+			drain();
+		}
+		drain();
+		if (lineOpen) {
+			content.append(NEWLINE);
+		}
+		return content.toString();
+	}
+
+	/**
+	 * Move the decoded chars into the content, replacing line breaks as it goes.
+	 */
+	private void drain() {
+		chars.flip();
+		char[] array = chars.array();
+		int end = chars.limit();
+		int start = 0;
+		for (int i = 0; i < end; i++) {
+			char c = array[i];
+			if (c == '\n' || c == '\r') {
+				content.append(array, start, i - start);
+				if (c == '\r' || !afterCarriageReturn) {  // the "\n" of a "\r\n" is already replaced
+					content.append(NEWLINE);
+				}
+				afterCarriageReturn = c == '\r';
+				lineOpen = false;
+				start = i + 1;
+			} else if (i == start) {
+				afterCarriageReturn = false;
+				lineOpen = true;
+			}
+		}
+		content.append(array, start, end - start);
+		chars.clear();
+	}
+}
@@ -1,13 +1,9 @@
 package com.github.hhiroshell.cowsay;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
@@ -23,7 +19,8 @@ import java.util.logging.Logger;
  *	or the default cowfile.
  *
  * The cow will not be formatted or parsed, it will be the raw content loaded from the filesystem
- *    (though newlines will be replaced to platform default).
+ *    (though it is read as UTF-8 and newlines will be replaced to platform default, see CowfileReader).
+ * Loaded cowfiles are cached, along with their compiled templates, see {@link #getCache()}.
  * @author Rick Brown
  */
 public final class Cowloader {
@@ -37,6 +34,11 @@ public final class Cowloader {
 	 */
 	public static final String DEFAULT_COW = "default";
 
+	/**
+	 * Loaded and compiled cowfiles, keyed by their resolved identity.
+	 */
+	private static final CowfileCache CACHE = CowfileCache.fromSystemProperties();
+
 	/**
 	 * Utility classes do not need constructors.
 	 */
@@ -52,103 +54,165 @@ public final class Cowloader {
 	 * @return The content of the specified cowfile (or default cowfile if cowfileSpec is null or empty).
 	 */
 	public static String load(final String cowfileSpec) {
+		CowfileCache.Entry entry = loadEntry(cowfileSpec);
+		if (entry != null) {
+			return entry.getContent();
+		}
+		return null;  // should never happen
+	}
+
+	/**
+	 * As {@link #load(String)} but returns the compiled template, which is cached alongside the cowfile content.
+	 *
+	 * @param cowfileSpec The value passed to `-f` on the commandline.
+	 * @return The compiled cowfile (or default cowfile if cowfileSpec is null or empty).
+	 * @throws CowParseException If the cowfile could not be parsed.
+	 */
+	public static CompiledCow loadCompiled(final String cowfileSpec) throws CowParseException {
+		CowfileCache.Entry entry = loadEntry(cowfileSpec);
+		if (entry != null) {
+			return entry.getCompiled();
+		}
+		return null;  // should never happen
+	}
+
+	/**
+	 * Get the cache of loaded cowfiles, mainly so that its counters can be inspected.
+	 * @return The cowfile cache.
+	 */
+	public static CowfileCache getCache() {
+		return CACHE;
+	}
+
+	/**
+	 * Resolves the cowfileSpec and loads it, from the cache if possible.
+	 * @param cowfileSpec The value passed to `-f` on the commandline.
+	 * @return The cache entry for the resolved cowfile.
+	 */
+	private static CowfileCache.Entry loadEntry(final String cowfileSpec) {
+		long start = RenderMetrics.start();
+		CowLoadEvent event = CowEvents.AVAILABLE ? CowLoadEvent.start(cowfileSpec) : null;
+		try {
+			return resolveEntry(cowfileSpec, event);
+		} finally {
+			if (event != null) {
+				event.finish();
+			}
+			RenderMetrics.stop(RenderMetrics.Stage.RESOLVE, start);
+		}
+	}
+
+	/**
+	 * Resolves the cowfileSpec, falling back to the default cowfile, and loads it.
+	 * @param cowfileSpec The value passed to `-f` on the commandline.
+	 * @param event The flight recorder event for the load, or null if it is not being recorded.
+	 * @return The cache entry for the resolved cowfile.
+	 */
+	private static CowfileCache.Entry resolveEntry(final String cowfileSpec, final CowLoadEvent event) {
 		String effectiveCowfileSpec = (cowfileSpec != null) ? cowfileSpec.trim() : DEFAULT_COW;
 		if (effectiveCowfileSpec.length() > 0) {
 			if (!effectiveCowfileSpec.endsWith(COWFILE_EXT)) {
 				effectiveCowfileSpec += COWFILE_EXT;
 			}
-			InputStream cowInputStream;
+			CowfileCache.Entry entry;
 			if (effectiveCowfileSpec.indexOf(File.separatorChar) >= 0) {
-				cowInputStream = getCowFromPath(effectiveCowfileSpec);
+				entry = getCowFromPath(effectiveCowfileSpec, event);
 			} else {
-				cowInputStream = getCowFromCowPath(effectiveCowfileSpec);
+				entry = getCowFromCowPath(effectiveCowfileSpec, event);
 			}
-			if (cowInputStream == null) {
+			if (entry == null) {
 				// Maybe there should be a verbose mode where we log this sort of error instead of silently failing?
-				cowInputStream = getCowFromResources(DEFAULT_COW + COWFILE_EXT);
-			}
-			if (cowInputStream != null) {
-				String cow = cowInputStreamToString(cowInputStream);
-				return cow;
+				entry = getCowFromResources(DEFAULT_COW + COWFILE_EXT, event);
 			}
+			return entry;
 		}
-		return null;  // should never happen
-	}
-
-	/**
-	 * Reads a cowfile from an InputStream and returns a string.
-	 * @param cowInputStream The InputStream instance to read into a String.
-	 * @return A String representing the result of reading the entire InputStream.
-	 */
-	private static String cowInputStreamToString(final InputStream cowInputStream) {
-		BufferedReader reader = new BufferedReader(new InputStreamReader(cowInputStream));
-		StringBuilder sb = new StringBuilder();
-		String line;
-		try {
-			String newLine = System.getProperty("line.separator");
-			while ((line = reader.readLine()) != null) {
-				sb.append(line);
-				sb.append(newLine);
-			}
-			reader.close();
-		} catch (IOException ex) {
-			Logger.getLogger(Cowloader.class.getName()).log(Level.SEVERE, null, ex);
-		} finally {
-			if (cowInputStream != null) {
-				try {
-					cowInputStream.close();
-				} catch (IOException ex) {
-					Logger.getLogger(Cowloader.class.getName()).log(Level.SEVERE, null, ex);
-				}
-			}
-		}
-		return sb.toString();
+		return null;
 	}
 
 	/**
 	 * In the case that the cowfileSpec is a filesystem path call this method to attempt to load the cowfile.
 	 * It will attempt to load the cowfile relative to CWD and if that fails it will try as an absolute path.
 	 * @param path A path to a cowfile either relative to CWD or an absolute path.
-	 * @return An InputStream to the cowfile if it exists.
+	 * @param event The flight recorder event for the load, or null if it is not being recorded.
+	 * @return The loaded cowfile if it exists.
 	 */
-	private static InputStream getCowFromPath(final String path) {
+	private static CowfileCache.Entry getCowFromPath(final String path, final CowLoadEvent event) {
 		String cwd = System.getProperty("user.dir");  // TODO is this really CWD?
 		if (cwd != null) {
 			File cowfile = new File(cwd, path);
 			if (isCowfile(cowfile)) {
-				return cowfileToCowInputStream(cowfile);
+				return getCowFromFile(cowfile, CowLoadEvent.PATH, event);
 			}
 		}
 		// maybe it's an absolute path?
 		File cowfile = new File(path);
 		if (isCowfile(cowfile)) {
-			return cowfileToCowInputStream(cowfile);
+			return getCowFromFile(cowfile, CowLoadEvent.PATH, event);
 		}
 		return null;
 	}
 
+	/**
+	 * Load a cowfile from the filesystem, from the cache if it has not been modified since it was cached.
+	 * @param cowfile The cowfile to load.
+	 * @param source How the cowfile was found, for the flight recorder event.
+	 * @param event The flight recorder event for the load, or null if it is not being recorded.
+	 * @return The loaded cowfile or null if it could not be read.
+	 */
+	private static CowfileCache.Entry getCowFromFile(final File cowfile, final String source, final CowLoadEvent event) {
+		if (event != null) {
+			event.resolved(source);
+		}
+		String key = "file:" + cowfile.getAbsolutePath() + '@' + cowfile.lastModified();
+		CowfileCache.Entry entry = CACHE.get(key);
+		if (entry == null) {
+			try {
+				entry = CACHE.put(key, CowfileReader.read(cowfile));
+				if (event != null) {
+					event.read(cowfile.length());
+				}
+			} catch (IOException ex) {
+				Logger.getLogger(Cowloader.class.getName()).log(Level.SEVERE, null, ex);
+			}
+		}
+		return entry;
+	}
+
 	/**
 	 * This will attempt to load a cowfile, by name, from the COWPATH environment variable or bundled cowfiles.
 	 * Note that bundled cowfiles are considered part of the COWPATH since this is how to original `cowsay` worked.
 	 * COWPATH takes precedence and bundled cowfiles are only considered after searching the COWPATH.
 	 *
 	 * @param cowName The name of a cowfile, e.g. "sheep" or "sheep.cow".
-	 * @return An InputStream to the first matching cowfile found.
+	 * @param event The flight recorder event for the load, or null if it is not being recorded.
+	 * @return The first matching cowfile found.
 	 */
-	private static InputStream getCowFromCowPath(final String cowName) {
-		String cowPath = System.getenv("COWPATH");
-		if (cowPath != null) {
-			String[] paths = cowPath.split(File.pathSeparator);
-			if (paths != null) {
-				for (String path : paths) {
-					File cowfile = getCowfile(path, cowName);
-					if (cowfile != null) {
-						return cowfileToCowInputStream(cowfile);
-					}
-				}
-			}
+	private static CowfileCache.Entry getCowFromCowPath(final String cowName, final CowLoadEvent event) {
+		File cowfile = getCowIndex().resolve(cowName);
+		if (isCowfile(cowfile)) {
+			return getCowFromFile(cowfile, CowLoadEvent.COWPATH, event);
+		}
+		return getCowFromResources(cowName, event);
+	}
+
+	/**
+	 * Get the index of cowfiles found on the COWPATH environment variable, it is built the first time it is needed.
+	 * @return The COWPATH index.
+	 */
+	public static CowIndex getCowIndex() {
+		return CowPathHolder.INDEX;
+	}
+
+	/**
+	 * Keep the COWPATH index up to date as cowfiles are added, removed or replaced, useful for long-running processes.
+	 * Replaced cowfiles are reloaded automatically since cached cowfiles are keyed by modification time.
+	 */
+	public static void watchCowPath() {
+		try {
+			getCowIndex().watch();
+		} catch (IOException ex) {
+			Logger.getLogger(Cowloader.class.getName()).log(Level.WARNING, "Could not watch COWPATH", ex);
 		}
-		return getCowFromResources(cowName);
 	}
 
 	/**
@@ -158,52 +222,9 @@ public final class Cowloader {
 	 */
 	public static String[] listAllCowfiles() {
 		String[] resultAsArray;
-		String[] bundled = null;
-		String cowfileExtRe = "\\" + COWFILE_EXT + "$";
-		InputStream bundleStream = Cowloader.class.getResourceAsStream("/cowfile-list.csv");
-		if (bundleStream != null) {
-			BufferedReader reader = new BufferedReader(new InputStreamReader(bundleStream));
-			StringBuilder sb = new StringBuilder();
-			try {
-				String line;
-				while ((line = reader.readLine()) != null) {
-					sb.append(line);
-				}
-				reader.close();
-				String bundleList = sb.toString();
-				bundled = bundleList.split(",");
-			} catch (IOException ex) {
-				Logger.getLogger(Cowloader.class.getName()).log(Level.WARNING, null, ex);
-			} finally {
-				try {
-					bundleStream.close();
-				} catch (IOException ex) {
-					Logger.getLogger(Cowloader.class.getName()).log(Level.SEVERE, null, ex);
-				}
-			}
-		}
-
-		Set<String> result = new HashSet<String>();
-		if (bundled != null) {
-			for (String cowfile : bundled) {
-				if (cowfile.endsWith(COWFILE_EXT)) {  // mech-and-cow for example is not a cowfile and should be excluded
-					result.add(cowfile.replaceAll(cowfileExtRe, ""));
-				}
-			}
-		}
-		String cowPath = System.getenv("COWPATH");
-		if (cowPath != null) {
-			String[] paths = cowPath.split(File.pathSeparator);
-			if (paths != null) {
-				for (String path : paths) {
-					File[] cowfiles = getCowFiles(path);
-					if (cowfiles != null) {
-						for (File cowfile : cowfiles) {
-							result.add(cowfile.getName().replaceAll(cowfileExtRe, ""));
-						}
-					}
-				}
-			}
+		Set<String> result = new HashSet<String>(BundledCows.getNames());
+		for (String cowfile : getCowIndex().getNames()) {
+			result.add(cowfile.substring(0, cowfile.length() - COWFILE_EXT.length()));
 		}
 		resultAsArray = result.toArray(new String[result.size()]);
 		Arrays.sort(resultAsArray);
@@ -224,61 +245,48 @@ public final class Cowloader {
 		return false;
 	}
 
-	/**
-	 * Reads a File to an InputStream.
-	 * Not sure why I thought this should be a separate method, I guess it made sense at the time.
-	 * @param cowfile The cowfile to read.
-	 * @return An InputStream which can be used to read the File.
-	 */
-	private static InputStream cowfileToCowInputStream(final File cowfile) {
-		InputStream cowInputStream = null;
-		try {
-			cowInputStream = new FileInputStream(cowfile);
-		} catch (FileNotFoundException ex) {
-			Logger.getLogger(Cowloader.class.getName()).log(Level.SEVERE, null, ex);
-		}
-		return cowInputStream;
-	}
-
 	/**
 	 * Get a cowfile, by name, from the bundled cowfiles.
+	 * Bundled cowfiles are compiled into the BundledCows class at build time, so normally there is no resource to read
+	 * and nothing to parse, the raw content is only read if {@link #load(String)} asks for it;
+	 * other cowfiles which happen to be on the classpath are read as resources.
 	 * @param cowName The name of the cowfile to load.
-	 * @return An InputStream which can be used to read the cowfile or null if not found.
+	 * @param event The flight recorder event for the load, or null if it is not being recorded.
+	 * @return The loaded cowfile or null if not found.
 	 */
-	private static InputStream getCowFromResources(final String cowName) {
-		return Cowloader.class.getResourceAsStream("/cows/" + cowName);
-	}
-
-	/**
-	 * Get a cowfile, by name, from the given directory.
-	 * @param folder The absolute path to the filesystem folder.
-	 * @param cowName The name of the cowfile to load (without the ".cow" extension).
-	 * @return A File if the cowfile is found in this directory otherwise null.
-	 */
-	private static File getCowfile(final String folder, final String cowName) {
-		File[] cowfiles = getCowFiles(folder);
-		for (File cowfile : cowfiles) {
-			if (cowfile.getName().equals(cowName)) {
-				return cowfile;
+	private static CowfileCache.Entry getCowFromResources(final String cowName, final CowLoadEvent event) {
+		if (event != null) {
+			event.resolved(CowLoadEvent.BUNDLED);
+		}
+		String key = "bundled:" + cowName;
+		CowfileCache.Entry entry = CACHE.get(key);
+		if (entry == null) {
+			CompiledCow compiled = BundledCows.getCompiled(cowName);
+			if (compiled != null) {
+				if (event != null) {
+					event.read(0);  // compiled in, nothing to read
+				}
+				return CACHE.put(key, compiled, "/cows/" + cowName);
+			}
+			InputStream cowInputStream = Cowloader.class.getResourceAsStream("/cows/" + cowName);
+			if (cowInputStream != null) {
+				try {
+					entry = CACHE.put(key, CowfileReader.read(cowInputStream));
+					if (event != null) {
+						event.read(entry.getContent().getBytes(StandardCharsets.UTF_8).length);
+					}
+				} catch (IOException ex) {
+					Logger.getLogger(Cowloader.class.getName()).log(Level.SEVERE, null, ex);
+				}
 			}
 		}
-		return null;
+		return entry;
 	}
 
 	/**
-	 * Gets all cowfiles found in the given directory.
-	 * @param folder The absolute path to the filesystem folder.
-	 * @return A list of all cowfiles found in this directory.
+	 * Lazily builds the COWPATH index.
 	 */
-	private static File[] getCowFiles(final String folder) {
-		File dir = new File(folder);
-		File[] files;
-		files = dir.listFiles(new FilenameFilter() {
-			@Override
-			public boolean accept(final File dir, final String name) {
-				return name.endsWith(".cow");
-			}
-		});
-		return files;
+	private static final class CowPathHolder {
+		private static final CowIndex INDEX = CowIndex.fromCowPath(System.getenv("COWPATH"));
 	}
 }
@@ -4,11 +4,15 @@ import org.apache.commons.lang3.StringUtils;
 import picocli.CommandLine;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -16,6 +20,14 @@ import java.util.logging.Logger;
 
 public class Cowsay {
 
+    /**
+     * The name of the option carrying the message when options are given by name, see {@link #fromOptions(Map)}.
+     */
+    static final String MESSAGE_OPTION = "message";
+
+    private static final List<String> VALUE_OPTIONS = Arrays.asList("f", "e", "T", "W", "bubble");
+    private static final List<String> FLAG_OPTIONS = Arrays.asList("n", "b", "d", "g", "p", "s", "t", "w", "y", "cowthink");
+
     //
     @CommandLine.Parameters(hidden = true)
     private List<String> moosages = null;
@@ -45,9 +57,30 @@ public class Cowsay {
     @CommandLine.Option(names = {"-n"}, description = "no wrap")
     private boolean nowrap = false;
 
+    @CommandLine.Option(names = {"--cowthink"}, description = "think the message instead of saying it")
+    private boolean cowthink = false;
+
+    @CommandLine.Option(names = {"--bubble"}, paramLabel = "<style>", description = "bubble style: say, think, round, double or any registered style")
+    private String bubble = null;
+
     @CommandLine.Option(names = {"-l"}, description = "list cows")
     private boolean listCows = false;
 
+    @CommandLine.Option(names = {"--gallery"}, description = "render the message from every available cow, in parallel, each under its name")
+    private boolean gallery = false;
+
+    @CommandLine.Option(names = {"--batch"}, description = "render one cow per line of stdin, lines may be plain messages or JSON objects")
+    private boolean batch = false;
+
+    @CommandLine.Option(names = {"--separator"}, description = "written between cows in batch and gallery modes")
+    private String separator = "";
+
+    @CommandLine.Option(names = {"--serve"}, paramLabel = "<port>", description = "serve cows over HTTP on the given port")
+    private Integer servePort = null;
+
+    @CommandLine.Option(names = {"--stats"}, description = "time each stage of rendering and write the metrics to stderr, or serve them at /stats")
+    private boolean stats = false;
+
     @CommandLine.Option(names = {"-v", "--version"}, versionHelp = true, description = "display version info")
     private boolean versionInfoRequested = false;
 
@@ -67,6 +100,58 @@ public class Cowsay {
             commandLine.printVersionHelp(System.out);
             return;
         }
+        if (cowsay.stats) {
+            RenderMetrics.setEnabled(true);
+        }
+        try {
+            run(cowsay);
+        } finally {
+            if (cowsay.stats && cowsay.servePort == null) {
+                System.err.print(statsReport());
+            }
+        }
+    }
+
+    /**
+     * Does whatever the commandline asked for.
+     * @param cowsay The parsed commandline.
+     */
+    private static void run(final Cowsay cowsay) {
+        if (cowsay.batch) {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+                new CowsayBatch(cowsay.toOptions(), cowsay.separator).run(in, out);
+            } catch (IOException ex) {
+                Logger.getLogger(Cowsay.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            return;
+        }
+        if (cowsay.servePort != null) {
+            try {
+                final CowsayServer server = new CowsayServer(cowsay.servePort);
+                server.start();
+                Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        server.stop();
+                    }
+                }));
+            } catch (IOException ex) {
+                Logger.getLogger(Cowsay.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            return;
+        }
+        if (cowsay.gallery) {
+            try {
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+                cowsay.sayGallery(out);
+                out.flush();
+            } catch (IOException ex) {
+                Logger.getLogger(Cowsay.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            return;
+        }
         if (cowsay.listCows) {
             String[] files = Cowloader.listAllCowfiles();
             if (files != null) {
@@ -74,32 +159,186 @@ public class Cowsay {
             }
             return;
         }
-        System.out.print(cowsay.say());
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+            cowsay.say(out);
+            out.flush();
+        } catch (IOException ex) {
+            Logger.getLogger(Cowsay.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Summarize the render metrics followed by the cowfile and render cache counters, for `--stats` and `/stats`.
+     * @return The report.
+     */
+    static String statsReport() {
+        String newLine = System.getProperty("line.separator");
+        return RenderMetrics.report() + Cowloader.getCache() + newLine + CowRenderer.getCache() + newLine;
+    }
+
+    /**
+     * Build a Cowsay from named options instead of commandline arguments, e.g. for HTTP requests.
+     * The option names are the same as the commandline flags without the dash, e.g. "f", "W" or "b",
+     * and the message is given by the "message" option.
+     * @param options The options, flags such as "n" or "b" are set by "true" (or an empty value).
+     * @return A Cowsay ready to say the message.
+     * @throws CommandLine.ParameterException If an option has an invalid value.
+     */
+    static Cowsay fromOptions(final Map<String, String> options) {
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String name = option.getKey();
+            String value = option.getValue();
+            if (VALUE_OPTIONS.contains(name)) {
+                args.add(toArg(name));
+                args.add(value);
+            } else if (FLAG_OPTIONS.contains(name)) {
+                if (value == null || value.isEmpty() || Boolean.parseBoolean(value)) {
+                    args.add(toArg(name));
+                }
+            }
+        }
+        String message = options.get(MESSAGE_OPTION);
+        if (message != null) {
+            args.add("--");  // the message is never an option, even if it looks like one
+            args.add(message);
+        }
+        Cowsay cowsay = new Cowsay();
+        new CommandLine(cowsay).parseArgs(args.toArray(new String[args.size()]));
+        return cowsay;
+    }
+
+    /**
+     * Get the commandline flag for an option name, single letter options take one dash and long options two.
+     * @param name The option name.
+     * @return The flag, e.g. "-f" or "--cowthink".
+     */
+    private static String toArg(final String name) {
+        return (name.length() == 1 ? "-" : "--") + name;
+    }
+
+    /**
+     * The inverse of {@link #fromOptions(Map)}, gets the rendering options of this Cowsay (but not the message) by name.
+     * @return The options which have been set.
+     */
+    Map<String, String> toOptions() {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("f", cowfile);
+        if (eyes != null) {
+            options.put("e", eyes);
+        }
+        if (tongue != null) {
+            options.put("T", tongue);
+        }
+        options.put("W", Byte.toString(wordwrap));
+        options.put("n", Boolean.toString(nowrap));
+        String mode = getMode();
+        if (mode != null) {
+            options.put(mode, Boolean.TRUE.toString());
+        }
+        options.put("cowthink", Boolean.toString(cowthink));
+        if (bubble != null) {
+            options.put("bubble", bubble);
+        }
+        return options;
     }
 
     String say() {
+        StringBuilder sb = new StringBuilder();
         try {
-            CowFace cowFace = CowFace.getByMode(this.getMode());
-            if (cowFace == null) {
-                // if we are in here no modes were set
-                cowFace = getCowFace();
+            say(sb);
+        } catch (IOException e) {
+            Logger.getLogger(Cowsay.class.getName()).log(Level.SEVERE, null, e);  // should never happen with a StringBuilder
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the cow to the given output.
+     * If there is no message on the commandline the message is streamed from stdin, so the whole input is never held in memory.
+     * @param out Where to write the cow.
+     * @throws IOException If writing the cow fails.
+     */
+    void say(final Appendable out) throws IOException {
+        try {
+            RenderRequest request = toRenderRequest();
+            if (moosages == null || moosages.isEmpty()) {
+                sayPipedInput(request, out);
+                return;
             }
-            String cowTemplate = Cowloader.load(cowfile);
-            if (cowTemplate != null) {
-                if (moosages == null || moosages.isEmpty()) {
-                    moosages = Arrays.asList(Cowsay.getPipedInput());
-                }
-                String moosage = StringUtils.join(this.moosages, " ");
-                if (moosage != null && moosage.length() > 0) {
-                    Message message = new Message(moosage, false);
-                    message.setWordwrap(nowrap ? 0 : wordwrap);
-                    return CowFormatter.formatCow(cowTemplate, cowFace, message);
+            CowRenderer.render(request, out);
+        } catch (CowParseException | IllegalArgumentException e) {
+            Logger.getLogger(Cowsay.class.getName()).log(Level.SEVERE, null, e);
+        }
+    }
+
+    /**
+     * Writes every available cow saying the message, see {@link CowGallery}.
+     * If there is no message on the commandline the lines piped to stdin are the message.
+     * @param out Where to write the cows.
+     * @throws IOException If writing the cows fails.
+     */
+    void sayGallery(final Appendable out) throws IOException {
+        try {
+            String message = moosages != null && !moosages.isEmpty()
+                    ? StringUtils.join(moosages, " ")
+                    : StringUtils.join(getPipedInput(), " ");  // as single cows join piped lines
+            new CowGallery(toRenderRequest(message), separator).run(out);
+        } catch (IllegalArgumentException e) {
+            Logger.getLogger(Cowsay.class.getName()).log(Level.SEVERE, null, e);
+        }
+    }
+
+    /**
+     * Get what this Cowsay would render as an immutable request, which is independent of this Cowsay from then on.
+     * @return The render request, its message is empty if the message is to be piped in.
+     */
+    RenderRequest toRenderRequest() {
+        return toRenderRequest(moosages != null ? StringUtils.join(moosages, " ") : "");
+    }
+
+    /**
+     * Get what this Cowsay would render with a given message.
+     * @param message The message.
+     * @return The render request.
+     */
+    private RenderRequest toRenderRequest(final String message) {
+        return RenderRequest.builder()
+                .message(message)
+                .cowfile(cowfile)
+                .mode(getMode())
+                .eyes(eyes)
+                .tongue(tongue)
+                .wordwrap(wordwrap)
+                .nowrap(nowrap)
+                .thought(cowthink)
+                .bubble(bubble)
+                .build();
+    }
+
+    /**
+     * Streams piped input from stdin, line-wrapping it as it arrives, and writes the cow saying it.
+     * @param request How to render the cow, its message is ignored.
+     * @param out Where to write the cow.
+     * @throws IOException If writing the cow fails.
+     * @throws CowParseException If the cowfile could not be parsed.
+     */
+    private static void sayPipedInput(final RenderRequest request, final Appendable out) throws IOException, CowParseException {
+        CompiledCow cowTemplate = Cowloader.loadCompiled(request.getCowfile());
+        try (StreamingMessage message = new StreamingMessage(request.getWordwrap(), request.isThought(), request.getBubble())) {
+            try (InputStreamReader isr = new InputStreamReader(System.in)) {
+                if (isr.ready()) {
+                    message.read(new BufferedReader(isr));
                 }
+            } catch (IOException ex) {
+                Logger.getLogger(Cowsay.class.getName()).log(Level.WARNING, null, ex);
+            }
+            if (!message.isEmpty()) {
+                message.writeBubble(out);
+                cowTemplate.render(request.getFace(), message.getThoughts(), out);
             }
-        } catch (CowParseException e) {
-            Logger.getLogger(Cowsay.class.getName()).log(Level.SEVERE, null, e);
         }
-        return "";
     }
 
     private String getMode() {
@@ -120,21 +359,6 @@ public class Cowsay {
         return null;
     }
 
-    /**
-     * Get a regular cow face optionally formatted with custom eyes and tongue from the command line.
-     * @return A regular cowface, possibly formatted with custom tongue and/or eyes.
-     */
-    private CowFace getCowFace() {
-        CowFace cowFace = new CowFace();
-        if (this.eyes != null) {
-            cowFace.setEyes(this.eyes);
-        }
-        if (this.tongue != null) {
-            cowFace.setTongue(this.tongue);
-        }
-        return cowFace;
-    }
-
    /**
     * Checks StdIn for piped input.
     * @return All lines from StdIn.
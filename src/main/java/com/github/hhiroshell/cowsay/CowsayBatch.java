@@ -0,0 +1,111 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import picocli.CommandLine;
+
+/**
+ * Renders many messages in one process, one record per line of input.
+ *
+ * Each record is either a plain text message, or a JSON object (NDJSON) with the message under "message" and,
+ * optionally, its own commandline options, e.g. {"message": "Moo", "f": "tux", "W": 20, "b": true}.
+ * Records inherit the options given on the commandline and may override them, a record which sets a mode replaces the
+ * commandline's mode rather than adding to it. Blank lines are skipped.
+ *
+ * Each record is rendered exactly as a single invocation would render it and cowfiles are loaded only once.
+ */
+public final class CowsayBatch {
+	private final Map<String, String> defaults;
+	private final String separator;
+
+	/**
+	 * Create a batch renderer.
+	 * @param defaults The options which apply to every record unless the record overrides them.
+	 * @param separator Written between consecutive records.
+	 */
+	public CowsayBatch(final Map<String, String> defaults, final String separator) {
+		this.defaults = new LinkedHashMap<String, String>(defaults);
+		this.separator = separator != null ? separator : "";
+	}
+
+	/**
+	 * Render every record from the input, streaming the results to the output.
+	 * Records which cannot be parsed are logged and skipped. The render cache is turned on, records often repeat.
+	 * @param in The records, one per line.
+	 * @param out Where to write the rendered cows.
+	 * @return The number of records rendered.
+	 * @throws IOException If reading or writing fails.
+	 */
+	public int run(final BufferedReader in, final Writer out) throws IOException {
+		CowRenderer.enableCache();
+		int count = 0;
+		int lineNumber = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			lineNumber++;
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			RenderRequest request;
+			CompiledCow cow;
+			try {
+				request = toRenderRequest(line);
+				if (request == null) {
+					continue;
+				}
+				cow = Cowloader.loadCompiled(request.getCowfile());
+			} catch (IllegalArgumentException | CommandLine.ParameterException | CowParseException ex) {
+				Logger.getLogger(CowsayBatch.class.getName()).log(Level.WARNING, "Skipping record {0}: {1}",
+						new Object[]{lineNumber, ex.getMessage()});
+				continue;
+			}
+			if (count > 0) {
+				out.write(separator);
+			}
+			CowRenderer.render(cow, request, out);
+			count++;
+		}
+		out.flush();
+		return count;
+	}
+
+	/**
+	 * Render a single record.
+	 * @param record A plain message or a JSON object.
+	 * @return The rendered cow, or null if the record has no message.
+	 * @throws CowParseException If the record's cowfile could not be parsed.
+	 */
+	String render(final String record) throws CowParseException {
+		RenderRequest request = toRenderRequest(record);
+		return request != null ? CowRenderer.render(request) : null;
+	}
+
+	/**
+	 * Parse a single record.
+	 * @param record A plain message or a JSON object.
+	 * @return What to render, or null if the record has no message.
+	 */
+	private RenderRequest toRenderRequest(final String record) {
+		Map<String, String> options = new LinkedHashMap<String, String>(defaults);
+		if (record.trim().startsWith("{")) {
+			Map<String, String> recordOptions = FlatJsonParser.parse(record);
+			if (!Collections.disjoint(recordOptions.keySet(), CowFace.COW_MODES.keySet())) {
+				options.keySet().removeAll(CowFace.COW_MODES.keySet());  // a cow has only one mode
+			}
+			options.putAll(recordOptions);
+		} else {
+			options.put(Cowsay.MESSAGE_OPTION, record);
+		}
+		String message = options.get(Cowsay.MESSAGE_OPTION);
+		if (message == null || message.isEmpty()) {
+			return null;  // without a message the cow would go looking for stdin, which is where the records come from
+		}
+		return Cowsay.fromOptions(options).toRenderRequest();
+	}
+}
@@ -0,0 +1,348 @@
+package com.github.hhiroshell.cowsay;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import picocli.CommandLine;
+
+/**
+ * Serves cows over HTTP so that a long-running process can render many cows without paying process startup each time.
+ *
+ * Options are the same as on the commandline, without the dash, and may be given as query parameters,
+ * a form-encoded body or a JSON object body, e.g. `GET /?f=tux&b&message=Moo`
+ * or `POST /` with `{"f": "tux", "b": true, "message": "Moo"}`. The message may also be given as `m`.
+ * The rendered cow is returned as UTF-8 plain text.
+ *
+ * Cowfiles may only be named, so they are found on the COWPATH or bundled, a cowfile path is rejected with 400.
+ * Bodies larger than 1 MiB are rejected with 413 and any path other than `/` or `/stats` is not found.
+ * When more requests are waiting than the server will queue new requests are turned away with 503.
+ *
+ * Cowfiles and their compiled templates stay cached between requests and the COWPATH is watched for changes.
+ * `GET /stats` reports the {@link RenderMetrics}, which are only timed if enabled, e.g. with `--stats`.
+ */
+public final class CowsayServer {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String SAY_PATH = "/";
+	private static final String STATS_PATH = "/stats";
+	private static final String SHORT_MESSAGE_OPTION = "m";
+	private static final int MAX_BODY_SIZE = 1024 * 1024;
+	private static final int QUEUE_SIZE = 1024;
+	private static final int STOP_DELAY_SECONDS = 1;
+
+	private final HttpServer server;
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Create a server, it will not accept requests until it is started.
+	 * @param port The port to listen on, zero picks any free port.
+	 * @throws IOException If the port could not be bound.
+	 */
+	public CowsayServer(final int port) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors() * 2;
+		// the queue is unbounded so the single accepting thread never blocks on, or drops, a connection;
+		// instead SayHandler answers 503 while more than QUEUE_SIZE requests are waiting, which is cheap enough to drain
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		this.server.createContext(SAY_PATH, new SayHandler());
+		this.server.createContext(STATS_PATH, new StatsHandler());
+		this.server.setExecutor(executor);
+	}
+
+	/**
+	 * Start accepting requests, with the render cache on.
+	 */
+	public void start() {
+		CowRenderer.enableCache();
+		Cowloader.watchCowPath();
+		server.start();
+		Logger.getLogger(CowsayServer.class.getName()).log(Level.INFO, "Serving cows on port {0,number,#}", getPort());
+	}
+
+	/**
+	 * Stop accepting requests, allowing a short time for requests in flight to complete.
+	 * The render cache's statistics are logged so it can be sized for the traffic it saw.
+	 */
+	public void stop() {
+		server.stop(STOP_DELAY_SECONDS);
+		executor.shutdown();
+		Logger.getLogger(CowsayServer.class.getName()).log(Level.INFO, "{0}", CowRenderer.getCache());
+	}
+
+	/**
+	 * Get the port the server is listening on.
+	 * @return The bound port.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Collects the request options from the query string and body.
+	 * @param exchange The HTTP exchange.
+	 * @return The options, body values override query values.
+	 * @throws IOException If the body could not be read.
+	 * @throws BodyTooLargeException If the body is larger than the server accepts.
+	 */
+	static Map<String, String> readOptions(final HttpExchange exchange) throws IOException {
+		Map<String, String> options = new LinkedHashMap<String, String>();
+		parseQuery(exchange.getRequestURI().getRawQuery(), options);
+		if ("POST".equals(exchange.getRequestMethod())) {
+			String body = readBody(exchange.getRequestBody());
+			String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+			if (contentType != null && contentType.contains("json")) {
+				options.putAll(FlatJsonParser.parse(body));
+			} else {
+				parseQuery(body, options);
+			}
+		}
+		if (!options.containsKey(Cowsay.MESSAGE_OPTION) && options.containsKey(SHORT_MESSAGE_OPTION)) {
+			options.put(Cowsay.MESSAGE_OPTION, options.get(SHORT_MESSAGE_OPTION));
+		}
+		return options;
+	}
+
+	/**
+	 * Parses a form-encoded query string.
+	 * @param query The raw query string, may be null.
+	 * @param options The map to add the parameters to.
+	 * @throws UnsupportedEncodingException Never, UTF-8 is always supported.
+	 */
+	private static void parseQuery(final String query, final Map<String, String> options) throws UnsupportedEncodingException {
+		if (query == null || query.isEmpty()) {
+			return;
+		}
+		for (String pair : query.split("&")) {
+			int idx = pair.indexOf('=');
+			String name = idx >= 0 ? pair.substring(0, idx) : pair;
+			String value = idx >= 0 ? pair.substring(idx + 1) : "";
+			if (!name.isEmpty()) {
+				options.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+			}
+		}
+	}
+
+	/**
+	 * Reads the request body as UTF-8.
+	 * @param in The request body.
+	 * @return The body as a String.
+	 * @throws IOException If the body could not be read.
+	 * @throws BodyTooLargeException If the body is larger than the server accepts.
+	 */
+	private static String readBody(final InputStream in) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			body.write(buffer, 0, read);
+			if (body.size() > MAX_BODY_SIZE) {
+				throw new BodyTooLargeException();
+			}
+		}
+		return new String(body.toByteArray(), UTF8);
+	}
+
+	/**
+	 * Determine if a cowfile is given by name only, a path could read any cowfile on the host.
+	 * @param cowfile The value of the `f` option, may be null.
+	 * @return true if the cowfile contains no path separator.
+	 */
+	static boolean isCowName(final String cowfile) {
+		return cowfile == null || (cowfile.indexOf('/') < 0 && cowfile.indexOf('\\') < 0);
+	}
+
+	/**
+	 * Sends 404 unless the request is for exactly the given path, contexts also match any path below theirs.
+	 * @param exchange The HTTP exchange.
+	 * @param path The handler's path.
+	 * @return true if the request is for the path, false if it has been answered with 404.
+	 * @throws IOException If the response could not be sent.
+	 */
+	private static boolean isPath(final HttpExchange exchange, final String path) throws IOException {
+		if (path.equals(exchange.getRequestURI().getPath())) {
+			return true;
+		}
+		respond(exchange, 404, "Not found\n");
+		return false;
+	}
+
+	/**
+	 * Sends a plain text response.
+	 * @param exchange The HTTP exchange.
+	 * @param status The HTTP status code.
+	 * @param text The response body.
+	 * @throws IOException If the response could not be sent.
+	 */
+	private static void respond(final HttpExchange exchange, final int status, final String text) throws IOException {
+		byte[] body = text.getBytes(UTF8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Send a rendered cow.
+	 * For short messages and the fixed faces the cow is encoded in memory, or already cached,
+	 * so the response is sent with its length in one write,
+	 * otherwise it is streamed to the client as it is rendered rather than built up in memory first.
+	 * @param exchange The HTTP exchange.
+	 * @param cow The cow to render.
+	 * @param request What to render.
+	 * @throws IOException If the response could not be sent.
+	 */
+	private static void respondCow(final HttpExchange exchange, final CompiledCow cow, final RenderRequest request) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+		ByteBuffer[] encoded = CowRenderer.encode(cow, request);
+		if (encoded != null) {
+			long length = 0;
+			for (ByteBuffer buffer : encoded) {
+				length += buffer.remaining();
+			}
+			exchange.sendResponseHeaders(200, length);
+		} else {
+			exchange.sendResponseHeaders(200, 0);  // chunked, the length is not known until the cow is rendered
+		}
+		OutputStream out = exchange.getResponseBody();
+		try {
+			if (encoded != null) {
+				CowRenderer.write(Channels.newChannel(out), encoded);
+			} else {
+				CowRenderer.stream(cow, request, Channels.newChannel(out));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Renders a cow for each request.
+	 */
+	private class SayHandler implements HttpHandler {
+		@Override
+		public void handle(final HttpExchange exchange) throws IOException {
+			try {
+				if (!isPath(exchange, SAY_PATH)) {
+					return;
+				}
+				String method = exchange.getRequestMethod();
+				if (!"GET".equals(method) && !"POST".equals(method)) {
+					exchange.getResponseHeaders().set("Allow", "GET, POST");
+					respond(exchange, 405, "Method not allowed\n");
+					return;
+				}
+				if (executor.getQueue().size() > QUEUE_SIZE) {
+					exchange.getResponseHeaders().set("Retry-After", String.valueOf(STOP_DELAY_SECONDS));
+					respond(exchange, 503, "Too many requests\n");
+					return;
+				}
+				Map<String, String> options;
+				RenderRequest request;
+				try {
+					options = readOptions(exchange);
+					request = Cowsay.fromOptions(options).toRenderRequest();
+				} catch (IllegalArgumentException | CommandLine.ParameterException ex) {
+					respond(exchange, 400, ex.getMessage() + "\n");
+					return;
+				} catch (BodyTooLargeException ex) {
+					respond(exchange, 413, ex.getMessage() + "\n");
+					return;
+				}
+				if (!isCowName(request.getCowfile())) {
+					respond(exchange, 400, "Cowfiles may only be given by name\n");
+					return;
+				}
+				String message = options.get(Cowsay.MESSAGE_OPTION);
+				if (message == null || message.isEmpty()) {
+					respond(exchange, 400, "A message is required\n");
+					return;
+				}
+				CompiledCow cow;
+				try {
+					cow = Cowloader.loadCompiled(request.getCowfile());
+				} catch (CowParseException ex) {
+					Logger.getLogger(CowsayServer.class.getName()).log(Level.WARNING, null, ex);
+					respond(exchange, 500, "Could not parse the cowfile\n");
+					return;
+				}
+				respondCow(exchange, cow, request);
+			} catch (IOException | RuntimeException ex) {
+				Logger.getLogger(CowsayServer.class.getName()).log(Level.WARNING, null, ex);
+				throw ex;
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Reports the render metrics and cache counters.
+	 */
+	private static class StatsHandler implements HttpHandler {
+		@Override
+		public void handle(final HttpExchange exchange) throws IOException {
+			try {
+				if (!isPath(exchange, STATS_PATH)) {
+					return;
+				}
+				if (!"GET".equals(exchange.getRequestMethod())) {
+					exchange.getResponseHeaders().set("Allow", "GET");
+					respond(exchange, 405, "Method not allowed\n");
+					return;
+				}
+				respond(exchange, 200, Cowsay.statsReport());
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Thrown if a request body is larger than {@link #MAX_BODY_SIZE}.
+	 */
+	static class BodyTooLargeException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Create an exception.
+		 */
+		BodyTooLargeException() {
+			super("Request body too large");
+		}
+	}
+
+	/**
+	 * Names the worker threads so they are easy to spot in a thread dump.
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			return new Thread(r, "cowsay-http-" + count.incrementAndGet());
+		}
+	}
+}
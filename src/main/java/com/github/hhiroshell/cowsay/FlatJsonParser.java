@@ -0,0 +1,193 @@
+package com.github.hhiroshell.cowsay;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parses a flat JSON object, e.g. {"message": "Moo", "f": "tux", "W": 20, "b": true}, into a map of strings.
+ * Only strings, numbers, booleans and null are supported as values since that is all a cowsay request needs,
+ * nested objects and arrays are rejected. This avoids pulling in a JSON library for a handful of options.
+ */
+final class FlatJsonParser {
+	private final String json;
+	private int pos = 0;
+
+	/**
+	 * Create a parser for a single JSON object.
+	 * @param json The JSON text.
+	 */
+	private FlatJsonParser(final String json) {
+		this.json = json;
+	}
+
+	/**
+	 * Parse a flat JSON object.
+	 * @param json The JSON text.
+	 * @return The members of the object, in document order, with non-string values converted to strings
+	 *    and null values omitted.
+	 * @throws IllegalArgumentException If the text is not a flat JSON object.
+	 */
+	static Map<String, String> parse(final String json) {
+		FlatJsonParser parser = new FlatJsonParser(json);
+		Map<String, String> result = parser.readObject();
+		parser.skipWhitespace();
+		if (parser.pos < json.length()) {
+			throw parser.error("Unexpected content after object");
+		}
+		return result;
+	}
+
+	/**
+	 * Reads an object and its members.
+	 * @return The members of the object.
+	 */
+	private Map<String, String> readObject() {
+		Map<String, String> result = new LinkedHashMap<String, String>();
+		expect('{');
+		skipWhitespace();
+		if (peek() == '}') {
+			pos++;
+			return result;
+		}
+		while (true) {
+			skipWhitespace();
+			String name = readString();
+			skipWhitespace();
+			expect(':');
+			skipWhitespace();
+			String value = readValue();
+			if (value != null) {
+				result.put(name, value);
+			}
+			skipWhitespace();
+			char c = next();
+			if (c == '}') {
+				return result;
+			} else if (c != ',') {
+				throw error("Expected ',' or '}'");
+			}
+		}
+	}
+
+	/**
+	 * Reads a scalar value.
+	 * @return The value as a string, or null if the value is JSON null.
+	 */
+	private String readValue() {
+		char c = peek();
+		if (c == '"') {
+			return readString();
+		}
+		int start = pos;
+		while (pos < json.length() && "{}[],:\" \t\r\n".indexOf(json.charAt(pos)) < 0) {
+			pos++;
+		}
+		String literal = json.substring(start, pos);
+		if ("null".equals(literal)) {
+			return null;
+		}
+		if ("true".equals(literal) || "false".equals(literal) || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+			return literal;
+		}
+		throw error("Unsupported value");
+	}
+
+	/**
+	 * Reads a string, resolving escape sequences.
+	 * @return The string value.
+	 */
+	private String readString() {
+		expect('"');
+		StringBuilder sb = new StringBuilder();
+		while (true) {
+			char c = next();
+			if (c == '"') {
+				return sb.toString();
+			} else if (c == '\\') {
+				char escaped = next();
+				switch (escaped) {
+					case 'b':
+						sb.append('\b');
+						break;
+					case 'f':
+						sb.append('\f');
+						break;
+					case 'n':
+						sb.append('\n');
+						break;
+					case 'r':
+						sb.append('\r');
+						break;
+					case 't':
+						sb.append('\t');
+						break;
+					case 'u':
+						if (pos + 4 > json.length()) {
+							throw error("Truncated unicode escape");
+						}
+						try {
+							sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+						} catch (NumberFormatException ex) {
+							throw error("Invalid unicode escape");
+						}
+						pos += 4;
+						break;
+					default:
+						sb.append(escaped);  // covers \" \\ and \/
+						break;
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Advances past any whitespace.
+	 */
+	private void skipWhitespace() {
+		while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	/**
+	 * Consumes the next character, which must be the expected one.
+	 * @param expected The character which must come next.
+	 */
+	private void expect(final char expected) {
+		if (next() != expected) {
+			throw error("Expected '" + expected + "'");
+		}
+	}
+
+	/**
+	 * Look at the next character without consuming it.
+	 * @return The next character.
+	 */
+	private char peek() {
+		if (pos >= json.length()) {
+			throw error("Unexpected end of input");
+		}
+		return json.charAt(pos);
+	}
+
+	/**
+	 * Consume the next character.
+	 * @return The next character.
+	 */
+	private char next() {
+		char c = peek();
+		pos++;
+		return c;
+	}
+
+	/**
+	 * Describe a syntax error at the current position.
+	 * @param problem What went wrong.
+	 * @return An exception for the caller to throw.
+	 */
+	private IllegalArgumentException error(final String problem) {
+		return new IllegalArgumentException(problem + " at position " + pos);
+	}
+}
@@ -0,0 +1,78 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * The message phase of rendering: a message which has been line-wrapped and drawn in its bubble, along with the
+ * `$thoughts` which lead from the cow to it. The cow body phase is {@link CompiledCow#render(CowFace, String, Appendable)}.
+ *
+ * The bubble does not depend on the cowfile or the face, so it can be kept and put on any number of cows, e.g. with
+ * {@link CowFormatter#formatCow(CompiledCow, CowFace, FormattedBubble)}; equally a cow body can be kept and given any
+ * number of bubbles. Instances are immutable and may be shared between threads. Use {@link Message#format()} to
+ * build one.
+ */
+public final class FormattedBubble {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final String bubble;
+	private final String thoughts;
+	private volatile byte[] encoded = null;  // encoded the first time it is needed, racing threads encode the same bytes
+
+	/**
+	 * Create a formatted bubble.
+	 * @param bubble The bubble, including the message and the line break after the bottom border.
+	 * @param thoughts The character/s to use for `$thoughts`.
+	 */
+	FormattedBubble(final String bubble, final String thoughts) {
+		this.bubble = bubble;
+		this.thoughts = thoughts;
+	}
+
+	/**
+	 * Get the bubble.
+	 * @return The message in its bubble, empty if there is no message.
+	 */
+	public String getBubble() {
+		return bubble;
+	}
+
+	/**
+	 * Get the character/s to use for the lines going from the cow to the bubble.
+	 * @return The correct character/s to use for `$thoughts`.
+	 */
+	public String getThoughts() {
+		return thoughts;
+	}
+
+	/**
+	 * Write the bubble to the given output.
+	 * @param out Where to write the bubble.
+	 * @throws IOException If writing fails.
+	 */
+	public void appendTo(final Appendable out) throws IOException {
+		out.append(bubble);
+	}
+
+	/**
+	 * Get the bubble encoded as UTF-8, it is encoded the first time it is needed.
+	 * @return The encoded bubble, which must not be modified.
+	 */
+	byte[] getEncoded() {
+		byte[] result = encoded;
+		if (result == null) {
+			result = bubble.getBytes(UTF8);
+			encoded = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Get the bubble.
+	 * @return The message in its bubble.
+	 */
+	@Override
+	public String toString() {
+		return bubble;
+	}
+}
@@ -0,0 +1,110 @@
+package com.github.hhiroshell.cowsay;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Estimates how often keys have been seen recently, for TinyLFU admission: a count-min sketch of four 4-bit counters
+ * per key, sixteen counters to a long. Counts saturate at 15, which is plenty to tell hot keys from one-offs.
+ * Once there have been ten increments per long in the table every counter is halved, so the sketch forgets old
+ * popularity and a key which was hot yesterday does not keep its place forever.
+ *
+ * Counters are updated with compare-and-set so the sketch is thread-safe without locks, a concurrent halving may
+ * lose the odd increment which only makes the estimate slightly more approximate.
+ */
+final class FrequencySketch {
+	private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+	private static final long HALF_MASK = 0x7777777777777777L;  // clears the bit shifted into each counter when halving
+	private static final int MAX_COUNT = 15;
+
+	private final AtomicLongArray table;
+	private final int tableMask;
+	private final int sampleSize;
+	private final AtomicInteger additions = new AtomicInteger();  // increments since the counters were last halved
+
+	/**
+	 * Create a sketch.
+	 * @param expectedKeys Roughly how many keys are expected to be worth counting, e.g. the capacity of the cache.
+	 */
+	FrequencySketch(final int expectedKeys) {
+		int length = Integer.highestOneBit(Math.max(64, Math.min(expectedKeys, 1 << 24)) * 2 - 1);
+		this.table = new AtomicLongArray(length);
+		this.tableMask = length - 1;
+		this.sampleSize = 10 * length;
+	}
+
+	/**
+	 * Estimate how often a key has been seen.
+	 * @param hash A well spread 64-bit hash of the key.
+	 * @return The estimated count, from 0 to 15.
+	 */
+	int frequency(final long hash) {
+		int start = ((int) hash & 3) << 2;
+		int frequency = MAX_COUNT;
+		for (int i = 0; i < SEEDS.length; i++) {
+			int offset = (start + i) << 2;
+			int count = (int) ((table.get(indexOf(hash, i)) >>> offset) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+		return frequency;
+	}
+
+	/**
+	 * Count a sighting of a key.
+	 * @param hash A well spread 64-bit hash of the key.
+	 */
+	void increment(final long hash) {
+		int start = ((int) hash & 3) << 2;
+		boolean added = false;
+		for (int i = 0; i < SEEDS.length; i++) {
+			added |= incrementAt(indexOf(hash, i), (start + i) << 2);
+		}
+		if (added && additions.incrementAndGet() == sampleSize) {
+			halve();
+		}
+	}
+
+	/**
+	 * Increments one counter unless it is already saturated.
+	 * @param index The long holding the counter.
+	 * @param offset The bit offset of the counter in the long.
+	 * @return true if the counter was incremented.
+	 */
+	private boolean incrementAt(final int index, final int offset) {
+		long mask = 0xfL << offset;
+		while (true) {
+			long value = table.get(index);
+			if ((value & mask) == mask) {
+				return false;
+			}
+			if (table.compareAndSet(index, value, value + (1L << offset))) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Halves every counter, only the thread whose increment reached the sample size does this.
+	 */
+	private void halve() {
+		for (int i = 0; i < table.length(); i++) {
+			long value;
+			do {
+				value = table.get(i);
+			} while (!table.compareAndSet(i, value, (value >>> 1) & HALF_MASK));
+		}
+		additions.addAndGet(-sampleSize / 2);
+	}
+
+	/**
+	 * Picks the long for one of a key's counters.
+	 * @param hash The hash of the key.
+	 * @param i Which of the key's counters.
+	 * @return The index in the table.
+	 */
+	private int indexOf(final long hash, final int i) {
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		return (int) h & tableMask;
+	}
+}
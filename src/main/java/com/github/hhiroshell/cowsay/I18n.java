@@ -1,17 +1,35 @@
 package com.github.hhiroshell.cowsay;
 
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Allows cowsay to be internationalized.
  * Moo! Muh! Meuh!
+ *
+ * Each language's messages are resolved once, the first time the language is used, and flattened into an immutable
+ * map which holds the language's own messages and the default language's messages for anything it does not translate.
+ * The maps are shared through a concurrent map, so any number of threads can look up messages in any number of
+ * languages at once without locking, and changing the default language never reloads anything.
  * @author Rick Brown
  */
 public final class I18n {
 	private static final String DEFAULT_LANG = "en";
-	private static Locale currentLocale = null;
-	private static ResourceBundle messages = null;
+	private static final String BUNDLE = "MessagesBundle";
+
+	/**
+	 * The messages of every language used so far, by locale.
+	 */
+	private static final ConcurrentMap<Locale, Map<String, String>> TABLES = new ConcurrentHashMap<Locale, Map<String, String>>();
+
+	private static volatile Locale currentLocale = new Locale(DEFAULT_LANG);
 
 	/**
 	 * Utility classes do not need constructors.
@@ -21,24 +39,83 @@ public final class I18n {
 	}
 
 	/**
-	 * Set the language.
+	 * Set the default language, used by {@link #getMessage(String)}.
 	 * @param language A BCP47 language, e.g. "en", "fr".
 	 */
 	public static void setLanguage(final String language) {
 		currentLocale = new Locale(language);
-		messages = ResourceBundle.getBundle("MessagesBundle", currentLocale);
 	}
 
 	/**
 	 * Get a message in the correct language.
 	 * @param key The lookup key for the message.
 	 * @return The message in the correct language, if found, otherwise in the default language.
+	 * @throws MissingResourceException If there is no message for the key in any language.
 	 */
 	protected static String getMessage(final String key) {
+		return getMessage(currentLocale, key);
+	}
+
+	/**
+	 * Get a message in a given language, whatever the default language is.
+	 * @param language A BCP47 language, e.g. "en", "de".
+	 * @param key The lookup key for the message.
+	 * @return The message in the given language, if found, otherwise in the default language.
+	 * @throws MissingResourceException If there is no message for the key in any language.
+	 */
+	public static String getMessage(final String language, final String key) {
+		return getMessage(new Locale(language), key);
+	}
+
+	/**
+	 * Get a message in a given language.
+	 * @param locale The language.
+	 * @param key The lookup key for the message.
+	 * @return The message in the given language, if found, otherwise in the default language.
+	 * @throws MissingResourceException If there is no message for the key in any language.
+	 */
+	private static String getMessage(final Locale locale, final String key) {
+		String message = getMessages(locale).get(key);
+		if (message == null) {
+			throw new MissingResourceException("No message for " + key, BUNDLE, key);
+		}
+		return message;
+	}
+
+	/**
+	 * Get all the messages in a language, resolving them if the language has not been used before.
+	 * If two threads resolve the same language at once both get the same map.
+	 * @param locale The language.
+	 * @return The messages by key.
+	 */
+	private static Map<String, String> getMessages(final Locale locale) {
+		Map<String, String> messages = TABLES.get(locale);
 		if (messages == null) {
-			setLanguage(DEFAULT_LANG);
+			messages = load(locale);
+			Map<String, String> existing = TABLES.putIfAbsent(locale, messages);
+			if (existing != null) {
+				messages = existing;
+			}
+		}
+		return messages;
+	}
+
+	/**
+	 * Resolve every message in a language, falling back to the default language but never to the JVM's locale,
+	 * so that a language's messages do not depend on where the JVM runs.
+	 * @param locale The language.
+	 * @return The messages by key, immutable.
+	 */
+	private static Map<String, String> load(final Locale locale) {
+		ResourceBundle bundle = ResourceBundle.getBundle(BUNDLE, locale,
+				ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_DEFAULT));
+		Map<String, String> messages = new HashMap<String, String>();
+		Enumeration<String> keys = bundle.getKeys();  // includes the keys of the parent bundles
+		while (keys.hasMoreElements()) {
+			String key = keys.nextElement();
+			messages.put(key, bundle.getString(key));
 		}
-		return messages.getString(key);
+		return Collections.unmodifiableMap(messages);
 	}
 
 }
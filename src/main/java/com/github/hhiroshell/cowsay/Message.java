@@ -1,9 +1,6 @@
 package com.github.hhiroshell.cowsay;
 
-import java.util.ArrayList;
-import java.util.List;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.text.WordUtils;
+import java.io.IOException;
 
 /**
  * Represents a "bubble-wrapped" and "line-wrapped" message portion of the cowsay / cowthink output.
@@ -18,10 +15,17 @@ public class Message {
 	public static final byte DEFAULT_WRAP = 40;
 	private static final String SAY_TOKEN = "\\";
 	private static final String THINK_TOKEN = "o";
+	private static final ThreadLocal<WordWrapper> WRAPPERS = new ThreadLocal<WordWrapper>() {
+		@Override
+		protected WordWrapper initialValue() {
+			return new WordWrapper();
+		}
+	};
 	private int wordwrap = -1;
 
 	private final String message;
 	private final boolean isThought;
+	private final BubbleStyle bubble;
 
 	/**
 	 * Create the formatted message.
@@ -29,8 +33,31 @@ public class Message {
 	 * @param isThought true if this should be formatted as thought instead of speech.
 	 */
 	public Message(final String message, final boolean isThought) {
+		this(message, isThought, BubbleStyle.getDefault(isThought));
+	}
+
+	/**
+	 * Create the formatted message in a given style of bubble.
+	 * @param message The user provided message to format.
+	 * @param isThought true if the cow thinks the message, which decides the `$thoughts` but not the bubble.
+	 * @param bubble The style of bubble to draw.
+	 */
+	public Message(final String message, final boolean isThought, final BubbleStyle bubble) {
 		this.isThought = isThought;
 		this.message = message;
+		this.bubble = bubble;
+	}
+
+	/**
+	 * Create the formatted message with a given wrap length.
+	 * @param message The user provided message to format.
+	 * @param isThought true if the cow thinks the message, which decides the `$thoughts` but not the bubble.
+	 * @param bubble The style of bubble to draw.
+	 * @param wordwrap Where to line-wrap the message, zero disables line-wrap.
+	 */
+	Message(final String message, final boolean isThought, final BubbleStyle bubble, final int wordwrap) {
+		this(message, isThought, bubble);
+		this.wordwrap = wordwrap;
 	}
 
 	/**
@@ -38,56 +65,72 @@ public class Message {
 	 * @return The message formatted with speech or thought bubble.
 	 */
 	public String getMessage() {
-		return formatMessage(this.message);
+		StringBuilder sb = new StringBuilder();
+		try {
+			appendMessage(sb);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);  // StringBuilder does not throw IOException
+		}
+		return sb.toString();
 	}
 
 	/**
-	 * Get the character/s to use for the lines going from the cow to the bubble.
-	 * @return The correct character/s to use for `$thoughts`.
+	 * Format the message once so that it can be put on any number of cows, see {@link FormattedBubble}.
+	 * @return The message formatted with speech or thought bubble, and its `$thoughts`.
 	 */
-	public String getThoughts() {
-		return this.isThought ? THINK_TOKEN : SAY_TOKEN;
+	public FormattedBubble format() {
+		return new FormattedBubble(getMessage(), getThoughts());
 	}
 
 	/**
-	 * Applies word wrapping to the message to handle long lines.
-	 * @param message The raw input message.
-	 * @return The message with long lines wrapped.
+	 * Write the formatted message to the given output, without building it as a String first.
+	 * @param out Where to write the message formatted with speech or thought bubble.
+	 * @throws IOException If writing fails.
 	 */
-	private String wrapMessage(final String message) {
-		// Note that the original cowsay wraps lines mid-word.
-		// This version differs in that it wraps between words if possible.
-		int wrap = getWordwrap();
-		if (wrap <= 0) {
-			return message;
-		}
-		final List<String> result = new ArrayList<String>();
-		String newLine = System.getProperty("line.separator");
-		String[] lines = message.split(newLine);
-		for (String line : lines) {
-			result.add(WordUtils.wrap(line, wrap, null, true));
+	public void appendMessage(final Appendable out) throws IOException {
+		if (this.message != null) {
+			// Note that the original cowsay wraps lines mid-word.
+			// This version differs in that it wraps between words if possible.
+			long start = RenderMetrics.start();
+			WordWrapper lines = WRAPPERS.get();
+			lines.wrap(this.message, getWordwrap(), System.getProperty("line.separator"));
+			RenderMetrics.stop(RenderMetrics.Stage.WRAP, start);
+			start = RenderMetrics.start();
+			try {
+				if (out instanceof StringBuilder) {
+					StringBuilder sb = (StringBuilder) out;
+					sb.ensureCapacity(sb.length() + Bubble.measureBubble(bubble, lines, lines.getLongestLine()));
+				}
+				Bubble.appendBubble(bubble, this.message, lines, out);
+			} finally {
+				RenderMetrics.stop(RenderMetrics.Stage.BUBBLE, start);
+			}
 		}
-		return StringUtils.join(result, newLine);
 	}
 
 	/**
-	 * Builds the bubble around the message.
-	 * @param message The plain message as provided by the user.
-	 * @return The message, line-wrapped and bubble-wrapped.
+	 * Get the length of the user provided message.
+	 * @return The number of chars in the message, zero if there is none.
 	 */
-	private String formatMessage(final String message) {
-		String result;
-		if (message != null) {
-			result = wrapMessage(message);
-			int longestLine = getLongestLineLen(result);
-			if (!isThought) {
-				result = Bubble.formatSpeech(result, longestLine);
-			} else {
-				result = Bubble.formatThought(result, longestLine);
-			}
-			return result;
-		}
-		return "";
+	int getLength() {
+		return message != null ? message.length() : 0;
+	}
+
+	/**
+	 * Get the character/s to use for the lines going from the cow to the bubble.
+	 * @return The correct character/s to use for `$thoughts`.
+	 */
+	public String getThoughts() {
+		return getThoughts(this.isThought);
+	}
+
+	/**
+	 * Get the character/s to use for the lines going from the cow to a speech or thought bubble.
+	 * @param isThought true for a thought bubble, false for a speech bubble.
+	 * @return The correct character/s to use for `$thoughts`.
+	 */
+	static String getThoughts(final boolean isThought) {
+		return isThought ? THINK_TOKEN : SAY_TOKEN;
 	}
 
 	/**
@@ -116,19 +159,4 @@ public class Message {
 		}
 		return DEFAULT_WRAP;
 	}
-
-	/**
-	 * For a given multiline message determines the character count of the longest line.
-	 * @param message The message after line-wrap has been applied but before any bubble wrapping.
-	 * @return The count of characters in the longest line.
-	 */
-	private static int getLongestLineLen(final String message) {
-		String newLine = System.getProperty("line.separator");
-		String[] lines = message.split(newLine);
-		int maxLen = 0;
-		for (String line : lines) {
-			maxLen = Math.max(maxLen, line.length());
-		}
-		return maxLen;
-	}
 }
@@ -0,0 +1,369 @@
+package com.github.hhiroshell.cowsay;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-bounded cache of rendered cows, encoded as UTF-8, so that the same short message from the same cow with the
+ * same face, bubble and wrap is only rendered once. Messages longer than {@link #MAX_MESSAGE_LENGTH} are never cached,
+ * they are streamed as they are rendered instead.
+ *
+ * Entries are keyed by a 64-bit fingerprint of the compiled cow and the request, and keep both so that a fingerprint
+ * collision is only ever a miss. The compiled cow is compared by identity, so when a cowfile on the COWPATH changes
+ * its old renderings are never served again and simply age out.
+ *
+ * A cache which takes every new message would be flushed by one-off messages, so new entries must win admission:
+ * a {@link FrequencySketch} counts every lookup, hit or miss, and when the cache is full a newcomer is only admitted if
+ * it has been asked for more often than each entry it would evict (TinyLFU). Victims are picked by the CLOCK
+ * algorithm, a hit only marks its entry as referenced, so lookups take no locks; adding an entry is synchronized.
+ *
+ * Hit, miss, rejection and eviction counters and the approximate number of bytes retained are exposed so that
+ * the cache can be sized sensibly.
+ */
+public final class RenderCache {
+	/**
+	 * The system property which can be used to override the maximum weight, in bytes, of the cache, zero disables it.
+	 */
+	public static final String MAX_WEIGHT_PROPERTY = "cowsay.renderCache.maxBytes";
+
+	/**
+	 * The default maximum weight of the cache, it is disabled since a process which renders one cow gains nothing.
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = 0;
+
+	/**
+	 * The maximum weight of the cache in the server and batch modes, room for several thousand short messages.
+	 */
+	public static final long LONG_RUNNING_MAX_WEIGHT = 4 * 1024 * 1024;
+
+	/**
+	 * The longest message which is cached.
+	 */
+	public static final int MAX_MESSAGE_LENGTH = 1024;
+
+	private static final int ENTRY_OVERHEAD = 96;  // the entry, its key and its map node, roughly
+	private static final int TYPICAL_WEIGHT = 512;  // a short message from a typical cow, for sizing the sketch
+
+	private final long maxWeight;
+	private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<Long, Entry>();
+	private final FrequencySketch sketch;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private Entry[] ring = new Entry[64];  // every entry, in no particular order, swept by the CLOCK hand
+	private int ringSize = 0;
+	private int hand = 0;
+	private long weight = 0;
+	private long evictions = 0;
+	private long rejections = 0;
+
+	/**
+	 * Create a cache.
+	 * @param maxWeight The maximum number of bytes the cache may retain, zero disables caching.
+	 */
+	public RenderCache(final long maxWeight) {
+		this.maxWeight = Math.max(0, maxWeight);
+		this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, this.maxWeight / TYPICAL_WEIGHT));
+	}
+
+	/**
+	 * Create a cache sized according to the {@link #MAX_WEIGHT_PROPERTY} system property.
+	 * @param defaultMaxWeight The maximum weight if the property is not set.
+	 * @return A new cache.
+	 */
+	static RenderCache fromSystemProperties(final long defaultMaxWeight) {
+		return new RenderCache(Long.getLong(MAX_WEIGHT_PROPERTY, defaultMaxWeight));
+	}
+
+	/**
+	 * Determine if a request may be cached, which is the case if the cache is enabled and the message is short.
+	 * @param request The request.
+	 * @return true if the request should be looked up in the cache.
+	 */
+	boolean accepts(final RenderRequest request) {
+		return maxWeight > 0 && request.getMessage().length() <= MAX_MESSAGE_LENGTH;
+	}
+
+	/**
+	 * Look up a rendered cow.
+	 * @param cow The compiled cow being rendered.
+	 * @param request What is being rendered.
+	 * @return The cow encoded as UTF-8, which must not be modified, or null if it is not cached.
+	 */
+	byte[] get(final CompiledCow cow, final RenderRequest request) {
+		long key = fingerprint(cow, request);
+		sketch.increment(key);
+		Entry entry = entries.get(key);
+		if (entry != null && entry.matches(cow, request)) {
+			if (!entry.referenced) {
+				entry.referenced = true;
+			}
+			hits.increment();
+			return entry.output;
+		}
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Offer a freshly rendered cow to the cache, it is only copied and retained if it wins admission.
+	 * @param cow The compiled cow which was rendered.
+	 * @param request What was rendered.
+	 * @param output The cow encoded as UTF-8, in one or more parts, the buffers' positions are not changed.
+	 * @return true if the cow was retained.
+	 */
+	synchronized boolean put(final CompiledCow cow, final RenderRequest request, final ByteBuffer... output) {
+		long key = fingerprint(cow, request);
+		long length = 0;
+		for (ByteBuffer part : output) {
+			length += part.remaining();
+		}
+		long entryWeight = length + 2L * request.getMessage().length() + ENTRY_OVERHEAD;
+		if (entryWeight > maxWeight) {
+			return false;
+		}
+		Entry existing = entries.get(key);
+		if (existing != null) {
+			if (existing.matches(cow, request)) {
+				return true;  // another thread rendered it first
+			}
+			remove(existing);  // same fingerprint, the newcomer is just as popular
+		}
+		if (!makeRoom(entryWeight, sketch.frequency(key))) {
+			rejections++;
+			return false;
+		}
+		byte[] bytes = new byte[(int) length];
+		int offset = 0;
+		for (ByteBuffer part : output) {
+			int remaining = part.remaining();
+			part.duplicate().get(bytes, offset, remaining);
+			offset += remaining;
+		}
+		Entry entry = new Entry(key, cow, request, bytes, entryWeight);
+		if (ringSize == ring.length) {
+			ring = Arrays.copyOf(ring, ringSize * 2);
+		}
+		entry.slot = ringSize;
+		ring[ringSize++] = entry;
+		entries.put(key, entry);
+		weight += entryWeight;
+		return true;
+	}
+
+	/**
+	 * Evicts entries until a newcomer fits, unless any of them has been asked for at least as often as the newcomer,
+	 * in which case nothing is evicted. The caller must hold the lock.
+	 * @param entryWeight The weight of the newcomer.
+	 * @param frequency How often the newcomer has been asked for.
+	 * @return true if there is now room for the newcomer.
+	 */
+	private boolean makeRoom(final long entryWeight, final int frequency) {
+		long needed = weight + entryWeight - maxWeight;
+		if (needed <= 0) {
+			return true;
+		}
+		List<Entry> victims = new ArrayList<Entry>();
+		long freed = 0;
+		boolean admitted = true;
+		while (freed < needed) {
+			Entry victim = nextVictim();
+			victim.evicting = true;
+			victims.add(victim);
+			freed += victim.weight;
+			if (sketch.frequency(victim.key) >= frequency) {
+				admitted = false;
+				break;
+			}
+		}
+		for (Entry victim : victims) {
+			victim.evicting = false;
+			if (admitted) {
+				remove(victim);
+				evictions++;
+			}
+		}
+		return admitted;
+	}
+
+	/**
+	 * Advances the CLOCK hand to the next entry which has not been referenced since the hand last passed it,
+	 * clearing the referenced mark of each entry it passes. The caller must hold the lock.
+	 * @return The entry to evict next.
+	 */
+	private Entry nextVictim() {
+		while (true) {
+			if (hand >= ringSize) {
+				hand = 0;
+			}
+			Entry entry = ring[hand++];
+			if (entry.evicting) {
+				continue;
+			}
+			if (entry.referenced) {
+				entry.referenced = false;
+				continue;
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * Removes an entry, the caller must hold the lock.
+	 * @param entry The entry to remove.
+	 */
+	private void remove(final Entry entry) {
+		entries.remove(entry.key, entry);
+		weight -= entry.weight;
+		Entry last = ring[--ringSize];
+		ring[entry.slot] = last;
+		last.slot = entry.slot;
+		ring[ringSize] = null;
+	}
+
+	/**
+	 * Works out the key of a rendered cow: a 64-bit mix of the cow's identity and the request, which covers the
+	 * message, cowfile, face, bubble, wrap and thoughts.
+	 * @param cow The compiled cow.
+	 * @param request The request.
+	 * @return The key.
+	 */
+	private static long fingerprint(final CompiledCow cow, final RenderRequest request) {
+		long hash = ((long) request.hashCode() << 32) ^ (System.identityHashCode(cow) * 31L + request.getMessage().length());
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	/**
+	 * Remove all entries from the cache, the counters are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		Arrays.fill(ring, 0, ringSize, null);
+		ringSize = 0;
+		hand = 0;
+		weight = 0;
+	}
+
+	/**
+	 * Get the number of lookups which found a cached cow.
+	 * @return The hit count.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of lookups which did not find a cached cow.
+	 * @return The miss count.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Get the proportion of lookups which found a cached cow.
+	 * @return The hit ratio, from 0 to 1, zero if there have been no lookups.
+	 */
+	public double getHitRatio() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		return total > 0 ? (double) hitCount / total : 0;
+	}
+
+	/**
+	 * Get the number of rendered cows which were not retained because they were asked for less often than the
+	 * cows they would have evicted.
+	 * @return The rejection count.
+	 */
+	public synchronized long getRejections() {
+		return rejections;
+	}
+
+	/**
+	 * Get the number of entries which have been evicted to make room for more popular ones.
+	 * @return The eviction count.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Get the number of cows currently cached.
+	 * @return The entry count.
+	 */
+	public int getSize() {
+		return entries.size();
+	}
+
+	/**
+	 * Get the approximate number of bytes currently retained by the cache.
+	 * @return The current weight.
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Get the maximum number of bytes the cache may retain.
+	 * @return The maximum weight.
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * Summarizes the cache's effectiveness and memory use, e.g. for logging.
+	 * @return The hit ratio, counters, size and weight.
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "Render cache: %.1f%% hit ratio (%d hits, %d misses), %d rejected, %d evicted, %d cows in %d of %d bytes",
+				100 * getHitRatio(), getHits(), getMisses(), getRejections(), getEvictions(), getSize(), getWeight(), getMaxWeight());
+	}
+
+	/**
+	 * A rendered cow and what it was rendered from.
+	 */
+	private static final class Entry {
+		private final long key;
+		private final CompiledCow cow;
+		private final RenderRequest request;
+		private final byte[] output;
+		private final long weight;
+		private volatile boolean referenced = false;  // set on every hit, cleared as the CLOCK hand passes
+		private boolean evicting = false;  // chosen as a victim, guarded by the cache's lock
+		private int slot;  // index in the ring, guarded by the cache's lock
+
+		/**
+		 * Create an entry.
+		 * @param key The fingerprint of the cow and request.
+		 * @param cow The compiled cow.
+		 * @param request The request.
+		 * @param output The rendered cow, encoded as UTF-8.
+		 * @param weight The approximate number of bytes retained by the entry.
+		 */
+		Entry(final long key, final CompiledCow cow, final RenderRequest request, final byte[] output, final long weight) {
+			this.key = key;
+			this.cow = cow;
+			this.request = request;
+			this.output = output;
+			this.weight = weight;
+		}
+
+		/**
+		 * Determine if this entry is the rendering of a request, rather than of another with the same fingerprint.
+		 * @param compiledCow The compiled cow.
+		 * @param renderRequest The request.
+		 * @return true if this entry can be served for the request.
+		 */
+		boolean matches(final CompiledCow compiledCow, final RenderRequest renderRequest) {
+			return cow == compiledCow && request.equals(renderRequest);
+		}
+	}
+}
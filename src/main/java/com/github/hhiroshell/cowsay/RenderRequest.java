@@ -0,0 +1,238 @@
+package com.github.hhiroshell.cowsay;
+
+/**
+ * Everything needed to render one cow: the message, the cowfile, the face and how to wrap the message.
+ *
+ * Requests are immutable so they can be shared between threads and reused, e.g. as cache keys.
+ * Build them with {@link #builder()}, anything not set takes the same default as on the commandline.
+ */
+public final class RenderRequest {
+	private final String message;
+	private final String cowfile;
+	private final CowFace face;
+	private final int wordwrap;
+	private final boolean thought;
+	private final BubbleStyle bubble;
+
+	/**
+	 * Create a request from a completed builder.
+	 * @param builder The builder holding the request's values.
+	 */
+	private RenderRequest(final Builder builder) {
+		this.message = builder.message;
+		this.cowfile = builder.cowfile;
+		this.face = builder.mode != null ? CowFace.getByMode(builder.mode) : new CowFace(builder.eyes, builder.tongue);
+		this.wordwrap = builder.nowrap ? 0 : (builder.wordwrap >= 0 ? builder.wordwrap : Message.DEFAULT_WRAP);
+		this.thought = builder.thought;
+		this.bubble = builder.bubble != null ? builder.bubble : BubbleStyle.getDefault(builder.thought);
+	}
+
+	/**
+	 * Start building a request.
+	 * @return A builder with every value set to its default.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Get the message the cow will say.
+	 * @return The message, never null.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Get the cowfile spec, as it would be passed to `-f` on the commandline.
+	 * @return The cowfile spec.
+	 */
+	public String getCowfile() {
+		return cowfile;
+	}
+
+	/**
+	 * Get the face of the cow, taking account of the mode, eyes and tongue.
+	 * @return The cow face.
+	 */
+	public CowFace getFace() {
+		return face;
+	}
+
+	/**
+	 * Get where the message will be line-wrapped.
+	 * @return The wrap length, zero if line-wrap is disabled.
+	 */
+	public int getWordwrap() {
+		return wordwrap;
+	}
+
+	/**
+	 * Determine if the cow thinks the message rather than says it.
+	 * @return true for a thought bubble.
+	 */
+	public boolean isThought() {
+		return thought;
+	}
+
+	/**
+	 * Get the style of bubble to draw around the message.
+	 * @return The bubble style, the classic thought or speech bubble unless another style was asked for.
+	 */
+	public BubbleStyle getBubble() {
+		return bubble;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof RenderRequest)) {
+			return false;
+		}
+		RenderRequest other = (RenderRequest) obj;
+		return wordwrap == other.wordwrap && thought == other.thought && message.equals(other.message)
+				&& cowfile.equals(other.cowfile) && face.equals(other.face) && bubble == other.bubble;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = message.hashCode();
+		result = 31 * result + cowfile.hashCode();
+		result = 31 * result + face.hashCode();
+		result = 31 * result + wordwrap;
+		result = 31 * result + bubble.hashCode();
+		return 31 * result + (thought ? 1 : 0);
+	}
+
+	/**
+	 * Builds a RenderRequest, builders are not thread-safe but the requests they build are.
+	 */
+	public static final class Builder {
+		private String message = "";
+		private String cowfile = Cowloader.DEFAULT_COW;
+		private String mode = null;
+		private String eyes = null;
+		private String tongue = null;
+		private int wordwrap = -1;
+		private boolean nowrap = false;
+		private boolean thought = false;
+		private BubbleStyle bubble = null;
+
+		/**
+		 * Use the Builder factory method.
+		 */
+		private Builder() {
+
+		}
+
+		/**
+		 * Set the message the cow will say.
+		 * @param message The message, an empty message renders nothing.
+		 * @return This builder.
+		 */
+		public Builder message(final String message) {
+			this.message = message != null ? message : "";
+			return this;
+		}
+
+		/**
+		 * Set the cowfile, as it would be passed to `-f` on the commandline.
+		 * @param cowfile The cowfile spec, null for the default cow.
+		 * @return This builder.
+		 */
+		public Builder cowfile(final String cowfile) {
+			this.cowfile = cowfile != null ? cowfile : Cowloader.DEFAULT_COW;
+			return this;
+		}
+
+		/**
+		 * Set the cow mode, which takes precedence over custom eyes and tongue as it does on the commandline.
+		 * @param mode A mode key, "b" for Borg, "d" for dead etc, or null for no mode.
+		 * @return This builder.
+		 * @throws IllegalArgumentException If the mode is not known.
+		 */
+		public Builder mode(final String mode) {
+			if (mode != null && !CowFace.isKnownMode(mode)) {
+				throw new IllegalArgumentException("Unknown cow mode: " + mode);
+			}
+			this.mode = mode;
+			return this;
+		}
+
+		/**
+		 * Set custom eyes.
+		 * @param eyes The eyes, null for the default eyes.
+		 * @return This builder.
+		 */
+		public Builder eyes(final String eyes) {
+			this.eyes = eyes;
+			return this;
+		}
+
+		/**
+		 * Set a custom tongue.
+		 * @param tongue The tongue, null for the default tongue.
+		 * @return This builder.
+		 */
+		public Builder tongue(final String tongue) {
+			this.tongue = tongue;
+			return this;
+		}
+
+		/**
+		 * Set where to line-wrap the message.
+		 * @param wordwrap The wrap length, zero disables line-wrap, a negative value means the default.
+		 * @return This builder.
+		 */
+		public Builder wordwrap(final int wordwrap) {
+			this.wordwrap = wordwrap;
+			return this;
+		}
+
+		/**
+		 * Disable line-wrap, whatever the wrap length.
+		 * @param nowrap true to disable line-wrap.
+		 * @return This builder.
+		 */
+		public Builder nowrap(final boolean nowrap) {
+			this.nowrap = nowrap;
+			return this;
+		}
+
+		/**
+		 * Set whether the cow thinks the message rather than says it.
+		 * @param thought true for a thought bubble.
+		 * @return This builder.
+		 */
+		public Builder thought(final boolean thought) {
+			this.thought = thought;
+			return this;
+		}
+
+		/**
+		 * Set the style of bubble to draw, by the name it was registered with.
+		 * @param bubble The name of the style, e.g. "round", or null for the classic thought or speech bubble.
+		 * @return This builder.
+		 * @throws IllegalArgumentException If there is no style with that name.
+		 * @see BubbleStyle#register(String, BubbleStyle)
+		 */
+		public Builder bubble(final String bubble) {
+			BubbleStyle style = BubbleStyle.forName(bubble);
+			if (bubble != null && style == null) {
+				throw new IllegalArgumentException("Unknown bubble style: " + bubble);
+			}
+			this.bubble = style;
+			return this;
+		}
+
+		/**
+		 * Build the request.
+		 * @return An immutable request.
+		 */
+		public RenderRequest build() {
+			return new RenderRequest(this);
+		}
+	}
+}
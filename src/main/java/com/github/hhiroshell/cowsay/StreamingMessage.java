@@ -0,0 +1,355 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A message read from a stream (e.g. piped stdin) which is line-wrapped incrementally as it arrives.
+ *
+ * As with {@link Message} for piped input, the input lines are joined with spaces and the result is wrapped exactly
+ * as {@link org.apache.commons.lang3.text.WordUtils#wrap(String, int, String, boolean)} would wrap it,
+ * but only the wrapped lines are kept rather than several full copies of the input.
+ * As with {@link WordWrapper}, lines are wrapped and padded in terminal columns once any input is not ASCII.
+ * The bubble cannot be drawn until the longest line is known so this is a two pass process:
+ * {@link #read(BufferedReader)} wraps and spools the lines, then {@link #writeBubble(Appendable)} replays them.
+ * Small messages are spooled in memory, large ones spill to a temporary file.
+ */
+final class StreamingMessage implements Closeable {
+	/**
+	 * The system property which can be used to override the number of chars spooled in memory before spilling to disk.
+	 */
+	static final String SPILL_THRESHOLD_PROPERTY = "cowsay.spillThreshold";
+	private static final int DEFAULT_SPILL_THRESHOLD = 4 * 1024 * 1024;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final char SPILL_LINE_END = '\n';  // wrapped lines can never contain line breaks
+
+	private final int wordwrap;
+	private final boolean isThought;
+	private final BubbleStyle bubble;
+	private final int spillThreshold;
+
+	private final StringBuilder pending = new StringBuilder();  // joined input not yet emitted as a wrapped line
+	private long inputLength = 0;  // length of the joined input so far
+	private final StringBuilder spool = new StringBuilder();  // wrapped lines, back to back
+	private int[] lineEnds = new int[64];  // end offset in the spool of each wrapped line
+	private int lineCount = 0;
+	private int currentLength = 0;  // width of the line currently being spooled
+	private int longestLine = 0;
+	private boolean ascii = true;  // while the input is pure ASCII it is measured in chars
+	private File spillFile = null;
+	private Writer spillWriter = null;
+
+	/**
+	 * Create a streaming message, spooling up to the default number of chars in memory.
+	 * @param wordwrap Where to line-wrap the message, zero disables line-wrap.
+	 * @param isThought true if the cow thinks the message, which decides the `$thoughts` but not the bubble.
+	 * @param bubble The style of bubble to draw.
+	 */
+	StreamingMessage(final int wordwrap, final boolean isThought, final BubbleStyle bubble) {
+		this(wordwrap, isThought, bubble, Integer.getInteger(SPILL_THRESHOLD_PROPERTY, DEFAULT_SPILL_THRESHOLD));
+	}
+
+	/**
+	 * Create a streaming message in the classic speech or thought bubble.
+	 * @param wordwrap Where to line-wrap the message, zero disables line-wrap.
+	 * @param isThought true if this should be formatted as thought instead of speech.
+	 * @param spillThreshold The number of wrapped chars to hold in memory before spilling to a temporary file.
+	 */
+	StreamingMessage(final int wordwrap, final boolean isThought, final int spillThreshold) {
+		this(wordwrap, isThought, BubbleStyle.getDefault(isThought), spillThreshold);
+	}
+
+	/**
+	 * Create a streaming message.
+	 * @param wordwrap Where to line-wrap the message, zero disables line-wrap.
+	 * @param isThought true if the cow thinks the message, which decides the `$thoughts` but not the bubble.
+	 * @param bubble The style of bubble to draw.
+	 * @param spillThreshold The number of wrapped chars to hold in memory before spilling to a temporary file.
+	 */
+	StreamingMessage(final int wordwrap, final boolean isThought, final BubbleStyle bubble, final int spillThreshold) {
+		this.wordwrap = wordwrap;
+		this.isThought = isThought;
+		this.bubble = bubble;
+		this.spillThreshold = spillThreshold;
+	}
+
+	/**
+	 * First pass: reads every line from the input, joining and wrapping them as they arrive.
+	 * @param in The input, e.g. stdin.
+	 * @throws IOException If reading fails or the spill file cannot be written.
+	 */
+	void read(final BufferedReader in) throws IOException {
+		String line;
+		boolean join = false;  // lines after the first are joined with a space
+		while ((line = in.readLine()) != null) {
+			inputLength += line.length() + (join ? 1 : 0);
+			ascii = ascii && DisplayWidth.isAscii(line, 0, line.length());
+			if (wordwrap > 0) {
+				if (join) {
+					pending.append(' ');
+				}
+				pending.append(line);
+				wrap(false);
+			} else {
+				// without line-wrap there is only one line, it goes straight to the spool
+				if (join) {
+					appendToLine(" ", 0, 1);
+				}
+				appendToLine(line, 0, line.length());
+			}
+			join = true;
+		}
+		if (wordwrap > 0) {
+			wrap(true);
+		} else {
+			endLine();
+		}
+		if (spillWriter != null) {
+			spillWriter.close();
+		}
+	}
+
+	/**
+	 * Emits as many wrapped lines as can be decided with the input seen so far.
+	 * This is the same algorithm as WordUtils.wrap, counting columns, it never looks further ahead than one character
+	 * beyond the wrap length, and a decision is only made when there is more input than fits since only then is it final.
+	 * @param finished true if there is no more input, in which case whatever is left is the final line.
+	 * @throws IOException If the spill file cannot be written.
+	 */
+	private void wrap(final boolean finished) throws IOException {
+		int offset = 0;
+		int fit;
+		while ((fit = fit(offset)) < pending.length()) {
+			if (pending.charAt(offset) == ' ') {
+				offset++;
+				continue;
+			}
+			int spaceToWrapAt = pending.lastIndexOf(" ", fit);
+			if (spaceToWrapAt >= offset) {
+				emitLine(offset, spaceToWrapAt);
+				offset = spaceToWrapAt + 1;
+			} else {
+				if (fit == offset) {
+					// a wide character in a narrower wrap gets a line to itself
+					fit = DisplayWidth.fit(pending, offset + Character.charCount(pending.codePointAt(offset)), pending.length(), 0);
+				}
+				emitLine(offset, fit);
+				offset = fit;
+			}
+		}
+		if (finished) {
+			// a trailing empty line is dropped, as it would be by String.split, unless it is the only line
+			if (offset < pending.length() || lineCount == 0) {
+				emitLine(offset, pending.length());
+			}
+			offset = pending.length();
+		}
+		pending.delete(0, offset);
+	}
+
+	/**
+	 * Finds how much of the pending input fits in the wrap length.
+	 * @param offset Where the wrapped line would start in the pending input.
+	 * @return The end of the part of the pending input which fits.
+	 */
+	private int fit(final int offset) {
+		if (ascii) {
+			return Math.min(offset + wordwrap, pending.length());
+		}
+		return DisplayWidth.fit(pending, offset, pending.length(), wordwrap);
+	}
+
+	/**
+	 * Measures some text, in chars while the input is pure ASCII or else in columns.
+	 * @param text Contains the text to measure.
+	 * @param start The start of the text to measure.
+	 * @param end The end of the text to measure.
+	 * @return The width of the text.
+	 */
+	private int width(final CharSequence text, final int start, final int end) {
+		return ascii ? end - start : DisplayWidth.width(text, start, end);
+	}
+
+	/**
+	 * Spools a wrapped line.
+	 * @param start The start of the line in the pending input.
+	 * @param end The end of the line in the pending input.
+	 * @throws IOException If the spill file cannot be written.
+	 */
+	private void emitLine(final int start, final int end) throws IOException {
+		appendToLine(pending, start, end);
+		endLine();
+	}
+
+	/**
+	 * Spools part of the current line.
+	 * @param text Contains the text to add to the line.
+	 * @param start The start of the text to add.
+	 * @param end The end of the text to add.
+	 * @throws IOException If the spill file cannot be written.
+	 */
+	private void appendToLine(final CharSequence text, final int start, final int end) throws IOException {
+		if (spillWriter == null && spool.length() + (end - start) > spillThreshold) {
+			spill();
+		}
+		if (spillWriter != null) {
+			spillWriter.append(text, start, end);
+		} else {
+			spool.append(text, start, end);
+		}
+		currentLength += width(text, start, end);
+	}
+
+	/**
+	 * Completes the current line.
+	 * @throws IOException If the spill file cannot be written.
+	 */
+	private void endLine() throws IOException {
+		longestLine = Math.max(longestLine, currentLength);
+		if (spillWriter != null) {
+			spillWriter.append(SPILL_LINE_END);
+		} else {
+			if (lineCount == lineEnds.length) {
+				lineEnds = Arrays.copyOf(lineEnds, lineCount * 2);
+			}
+			lineEnds[lineCount] = spool.length();
+		}
+		lineCount++;
+		currentLength = 0;
+	}
+
+	/**
+	 * Moves the lines spooled so far to a temporary file, all further lines will be written to the file.
+	 * @throws IOException If the spill file cannot be created.
+	 */
+	private void spill() throws IOException {
+		spillFile = File.createTempFile("cowsay", ".spool");
+		spillFile.deleteOnExit();
+		spillWriter = new OutputStreamWriter(new FileOutputStream(spillFile), UTF8);
+		int start = 0;
+		for (int i = 0; i < lineCount; i++) {
+			spillWriter.append(spool, start, lineEnds[i]);
+			spillWriter.append(SPILL_LINE_END);
+			start = lineEnds[i];
+		}
+		spillWriter.append(spool, start, spool.length());  // the current line so far
+		spool.setLength(0);
+		spool.trimToSize();
+		lineEnds = null;
+	}
+
+	/**
+	 * Determine if there is anything to say, this is the case if the joined input was not empty.
+	 * @return true if the message is empty.
+	 */
+	boolean isEmpty() {
+		return inputLength == 0;
+	}
+
+	/**
+	 * Get the character/s to use for the lines going from the cow to the bubble.
+	 * @return The correct character/s to use for `$thoughts`.
+	 */
+	String getThoughts() {
+		return Message.getThoughts(isThought);
+	}
+
+	/**
+	 * Second pass: writes the wrapped message, in its bubble, to the output.
+	 * @param out Where to write the bubble.
+	 * @throws IOException If writing fails or the spill file cannot be read.
+	 */
+	void writeBubble(final Appendable out) throws IOException {
+		bubble.appendTop(out, longestLine);
+		if (spillFile == null) {
+			int start = 0;
+			for (int i = 0; i < lineCount; i++) {
+				bubble.appendOpen(out, i, lineCount);
+				out.append(spool, start, lineEnds[i]);
+				bubble.appendClose(out, i, lineCount, longestLine - width(spool, start, lineEnds[i]));
+				start = lineEnds[i];
+			}
+		} else {
+			replaySpill(out);
+		}
+		bubble.appendBottom(out, longestLine);
+	}
+
+	/**
+	 * Streams the spilled lines from the temporary file into their bubble.
+	 * @param out Where to write the bubble.
+	 * @throws IOException If writing fails or the spill file cannot be read.
+	 */
+	private void replaySpill(final Appendable out) throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(spillFile), UTF8);
+		try {
+			char[] buffer = new char[8192];
+			CharSequence chunk = CharBuffer.wrap(buffer);
+			int index = 0;
+			int length = 0;
+			boolean lineOpen = false;
+			int kept = 0;  // the first half of a surrogate pair held over from the last read
+			int read;
+			while ((read = reader.read(buffer, kept, buffer.length - kept)) >= 0) {
+				int limit = kept + read;
+				if (limit > 0 && Character.isHighSurrogate(buffer[limit - 1])) {
+					limit--;  // measure the pair once both halves have been read
+				}
+				int start = 0;
+				for (int i = 0; i < limit; i++) {
+					if (!lineOpen) {
+						bubble.appendOpen(out, index, lineCount);
+						lineOpen = true;
+					}
+					if (buffer[i] == SPILL_LINE_END) {
+						out.append(chunk, start, i);
+						length += width(chunk, start, i);
+						bubble.appendClose(out, index, lineCount, longestLine - length);
+						index++;
+						length = 0;
+						lineOpen = false;
+						start = i + 1;
+					}
+				}
+				out.append(chunk, start, limit);
+				length += width(chunk, start, limit);
+				kept = kept + read - limit;
+				if (kept > 0) {
+					buffer[0] = buffer[limit];
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Removes the spill file, if there is one.
+	 */
+	@Override
+	public void close() {
+		if (spillWriter != null) {
+			try {
+				spillWriter.close();
+			} catch (IOException ex) {
+				Logger.getLogger(StreamingMessage.class.getName()).log(Level.WARNING, null, ex);
+			}
+		}
+		if (spillFile != null && !spillFile.delete()) {
+			Logger.getLogger(StreamingMessage.class.getName()).log(Level.WARNING, "Could not delete {0}", spillFile);
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package com.github.hhiroshell.cowsay;
+
+import java.util.Arrays;
+
+/**
+ * Line-wraps a message in a single pass without creating any strings.
+ * The wrapped lines are recorded as start and end offsets into the original message, along with their width, in a
+ * primitive array which is reused from one message to the next, and the width of the longest line is worked out
+ * along the way.
+ *
+ * Lines are wrapped and measured in terminal columns, see {@link DisplayWidth}, so CJK and emoji count double and
+ * combining marks not at all. For pure ASCII a column is a char, and the result is identical to splitting the message on the line separator, wrapping each line with
+ * {@link org.apache.commons.lang3.text.WordUtils#wrap(String, int, String, boolean)} (wrapping long words),
+ * joining the result and splitting it again, which is how messages were historically wrapped.
+ * In particular trailing empty lines are dropped, as String.split would drop them.
+ *
+ * Instances are not thread-safe.
+ */
+final class WordWrapper {
+	private int[] bounds = new int[48];  // start and end offset and width of each line, in threes
+	private int lineCount = 0;
+	private int longestLine = 0;
+	private boolean ascii = true;  // pure ASCII messages are measured in chars
+
+	/**
+	 * Wrap a message, replacing the result of any previous wrap.
+	 * @param message The message to wrap.
+	 * @param wrapLength Where to line-wrap the message, zero or less disables line-wrap but the message is still split into lines.
+	 * @param newLine The line separator.
+	 * @return The number of lines in the wrapped message, always at least one.
+	 */
+	int wrap(final CharSequence message, final int wrapLength, final String newLine) {
+		lineCount = 0;
+		longestLine = 0;
+		int length = message.length();
+		ascii = DisplayWidth.isAscii(message, 0, length);
+		int start = 0;
+		while (true) {
+			int separator = indexOf(message, newLine, start);
+			int end = separator >= 0 ? separator : length;
+			if (wrapLength > 0) {
+				wrapLine(message, start, end, wrapLength);
+			} else {
+				addLine(message, start, end);
+			}
+			if (separator < 0) {
+				break;
+			}
+			start = separator + newLine.length();
+		}
+		while (lineCount > 0 && getLineStart(lineCount - 1) == getLineEnd(lineCount - 1)) {
+			lineCount--;  // trailing empty lines
+		}
+		if (lineCount == 0) {
+			addLine(message, 0, 0);  // splitting an empty string still gives one (empty) line
+		}
+		return lineCount;
+	}
+
+	/**
+	 * Wraps a single line of the message, using the same algorithm as WordUtils.wrap but counting columns.
+	 * @param message The whole message.
+	 * @param start The start of the line in the message.
+	 * @param end The end of the line in the message.
+	 * @param wrapLength Where to line-wrap the line.
+	 */
+	private void wrapLine(final CharSequence message, final int start, final int end, final int wrapLength) {
+		int offset = start;
+		int fit;
+		while ((fit = fit(message, offset, end, wrapLength)) < end) {
+			if (message.charAt(offset) == ' ') {
+				offset++;
+				continue;
+			}
+			int spaceToWrapAt = fit;
+			while (spaceToWrapAt >= offset && message.charAt(spaceToWrapAt) != ' ') {
+				spaceToWrapAt--;
+			}
+			if (spaceToWrapAt >= offset) {
+				// normal case
+				addLine(message, offset, spaceToWrapAt);
+				offset = spaceToWrapAt + 1;
+			} else {
+				// really long word or URL, wrap it one line at a time
+				if (fit == offset) {
+					// a wide character in a narrower wrap still has to go somewhere, it gets a line to itself
+					fit = DisplayWidth.fit(message, offset + Character.charCount(Character.codePointAt(message, offset)), end, 0);
+				}
+				addLine(message, offset, fit);
+				offset = fit;
+			}
+		}
+		addLine(message, offset, end);
+	}
+
+	/**
+	 * Finds how much of a line fits in the wrap length.
+	 * @param message The whole message.
+	 * @param offset Where the wrapped line would start.
+	 * @param end The end of the line in the message.
+	 * @param wrapLength Where to line-wrap the line.
+	 * @return The end of the part of the line which fits.
+	 */
+	private int fit(final CharSequence message, final int offset, final int end, final int wrapLength) {
+		if (ascii) {
+			return Math.min(offset + wrapLength, end);
+		}
+		return DisplayWidth.fit(message, offset, end, wrapLength);
+	}
+
+	/**
+	 * Records a line.
+	 * @param message The whole message.
+	 * @param start The start of the line in the message.
+	 * @param end The end of the line in the message.
+	 */
+	private void addLine(final CharSequence message, final int start, final int end) {
+		int idx = lineCount * 3;
+		if (idx + 2 >= bounds.length) {
+			bounds = Arrays.copyOf(bounds, bounds.length * 2);
+		}
+		int width = ascii ? end - start : DisplayWidth.width(message, start, end);
+		bounds[idx] = start;
+		bounds[idx + 1] = end;
+		bounds[idx + 2] = width;
+		lineCount++;
+		longestLine = Math.max(longestLine, width);
+	}
+
+	/**
+	 * Finds the next line separator, like String.indexOf but for any CharSequence.
+	 * @param message The message to search.
+	 * @param newLine The line separator.
+	 * @param from Where to start searching.
+	 * @return The offset of the next separator or -1 if there are no more.
+	 */
+	private static int indexOf(final CharSequence message, final String newLine, final int from) {
+		int last = message.length() - newLine.length();
+		char first = newLine.charAt(0);
+		for (int i = from; i <= last; i++) {
+			if (message.charAt(i) == first) {
+				int j = 1;
+				while (j < newLine.length() && message.charAt(i + j) == newLine.charAt(j)) {
+					j++;
+				}
+				if (j == newLine.length()) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the number of lines in the wrapped message.
+	 * @return The line count.
+	 */
+	int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * Get the start of a wrapped line.
+	 * @param line The index of the line.
+	 * @return The offset in the message where the line starts.
+	 */
+	int getLineStart(final int line) {
+		return bounds[line * 3];
+	}
+
+	/**
+	 * Get the end of a wrapped line.
+	 * @param line The index of the line.
+	 * @return The offset in the message where the line ends.
+	 */
+	int getLineEnd(final int line) {
+		return bounds[line * 3 + 1];
+	}
+
+	/**
+	 * Get the width of a wrapped line.
+	 * @param line The index of the line.
+	 * @return The number of columns the line takes up.
+	 */
+	int getLineWidth(final int line) {
+		return bounds[line * 3 + 2];
+	}
+
+	/**
+	 * Get the width of the longest wrapped line.
+	 * @return The number of columns the longest line takes up.
+	 */
+	int getLongestLine() {
+		return longestLine;
+	}
+}
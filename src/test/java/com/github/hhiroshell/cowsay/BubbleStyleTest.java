@@ -0,0 +1,71 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the built-in bubble styles and registering new ones.
+ */
+public class BubbleStyleTest {
+
+	private static final String NEWLINE = System.getProperty("line.separator");
+
+	/**
+	 * Test of the round style.
+	 */
+	@Test
+	public void testRound() {
+		String expected = "\u256d\u2500\u2500\u2500\u2500\u2500\u256e" + NEWLINE
+				+ "\u2502 ab  \u2502" + NEWLINE
+				+ "\u2502 cde \u2502" + NEWLINE
+				+ "\u2570\u2500\u2500\u2500\u2500\u2500\u256f";
+		Assert.assertEquals(expected, Bubble.formatBubble(BubbleStyle.forName(BubbleStyle.ROUND), "ab" + NEWLINE + "cde", 3));
+	}
+
+	/**
+	 * Test of the double style.
+	 */
+	@Test
+	public void testDouble() {
+		String expected = "\u2554\u2550\u2550\u2550\u2550\u2550\u2557" + NEWLINE
+				+ "\u2551 moo \u2551" + NEWLINE
+				+ "\u255a\u2550\u2550\u2550\u2550\u2550\u255d";
+		Assert.assertEquals(expected, Bubble.formatBubble(BubbleStyle.forName(BubbleStyle.DOUBLE), "moo", 3));
+	}
+
+	/**
+	 * Test that a registered style can be rendered by name, and measured exactly.
+	 */
+	@Test
+	public void testRegister() throws CowParseException, IOException {
+		BubbleStyle.register("ascii-box", BubbleStyle.builder().top("+", '-', "+").bottom("+", '-', "+")
+				.single('|', '|').multi('|', '|', '|', '|', '|', '|').build());
+		Assert.assertTrue(BubbleStyle.getNames().containsAll(Arrays.asList("ascii-box", "double", "round", "say", "think")));
+		String cow = CowRenderer.render(RenderRequest.builder().message("moo").bubble("ascii-box").build());
+		Assert.assertTrue(cow, cow.startsWith("+-----+" + NEWLINE + "| moo |" + NEWLINE + "+-----+" + NEWLINE));
+		WordWrapper lines = new WordWrapper();
+		lines.wrap("moo moo moo", 4, NEWLINE);
+		BubbleStyle style = BubbleStyle.forName("ascii-box");
+		StringBuilder sb = new StringBuilder();
+		Bubble.appendBubble(style, "moo moo moo", lines, sb);
+		Assert.assertEquals(sb.length(), Bubble.measureBubble(style, lines, lines.getLongestLine()));
+	}
+
+	/**
+	 * Test that the built-in styles cannot be replaced.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testRegisterBuiltIn() {
+		BubbleStyle.register(BubbleStyle.SAY, BubbleStyle.builder().build());
+	}
+
+	/**
+	 * Test that an unknown style is rejected when the request is built.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknown() {
+		RenderRequest.builder().bubble("no-such-style");
+	}
+}
@@ -0,0 +1,84 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.IOException;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that bubbles are drawn correctly and presized exactly.
+ */
+public class BubbleTest {
+
+	private static final String NEWLINE = System.getProperty("line.separator");
+
+	/**
+	 * Test of formatSpeech method, of class Bubble, with a multi line message.
+	 */
+	@Test
+	public void testFormatSpeech() {
+		String expected = " _____" + NEWLINE
+				+ "/ ab  \\" + NEWLINE
+				+ "\\ cde /" + NEWLINE
+				+ " -----";
+		Assert.assertEquals(expected, Bubble.formatSpeech("ab" + NEWLINE + "cde", 3));
+	}
+
+	/**
+	 * Test of formatThought method, of class Bubble, with a single line message.
+	 */
+	@Test
+	public void testFormatThought() {
+		String expected = " _____" + NEWLINE
+				+ "( moo )" + NEWLINE
+				+ " -----";
+		Assert.assertEquals(expected, Bubble.formatThought("moo", 3));
+	}
+
+	/**
+	 * Test that borders and padding longer than the cached runs are drawn in full.
+	 */
+	@Test
+	public void testLongRuns() {
+		String longLine = StringUtils.repeat('m', 1000);
+		String expected = " " + StringUtils.repeat('_', 1002) + NEWLINE
+				+ "( x" + StringUtils.repeat(' ', 999) + " )" + NEWLINE
+				+ "( " + longLine + " )" + NEWLINE
+				+ " " + StringUtils.repeat('-', 1002);
+		Assert.assertEquals(expected, Bubble.formatThought("x" + NEWLINE + longLine, 1000));
+	}
+
+	/**
+	 * Test that lines are padded to the same width in columns, whatever their length in chars.
+	 */
+	@Test
+	public void testWidePadding() {
+		String expected = " ________" + NEWLINE
+				+ "/ \u725b\u4e73   \\" + NEWLINE
+				+ "| moo    |" + NEWLINE
+				+ "| e\u0301\u0301      |" + NEWLINE
+				+ "\\ \ud83d\udc04\ud83d\udc04\ud83d\udc04 /" + NEWLINE
+				+ " --------";
+		String message = "\u725b\u4e73" + NEWLINE + "moo" + NEWLINE + "e\u0301\u0301" + NEWLINE + "\ud83d\udc04\ud83d\udc04\ud83d\udc04";
+		Assert.assertEquals(expected, Bubble.formatSpeech(message, 6));
+	}
+
+	/**
+	 * Test that measureBubble gives exactly the length of the bubble drawn.
+	 */
+	@Test
+	public void testMeasureBubble() throws IOException {
+		String[] messages = {"", "moo", "moo moo moo moo moo", "a" + NEWLINE + NEWLINE + "bb", StringUtils.repeat("moo ", 200),
+			"\u725b\u4e73\u3092\u98f2\u3080 \ud83d\udc04 moo"};
+		WordWrapper lines = new WordWrapper();
+		for (String message : messages) {
+			for (boolean isThought : new boolean[]{false, true}) {
+				BubbleStyle bubble = BubbleStyle.getDefault(isThought);
+				lines.wrap(message, 7, NEWLINE);
+				StringBuilder sb = new StringBuilder();
+				Bubble.appendBubble(bubble, message, lines, sb);
+				Assert.assertEquals(message, sb.length(), Bubble.measureBubble(bubble, lines, lines.getLongestLine()));
+			}
+		}
+	}
+}
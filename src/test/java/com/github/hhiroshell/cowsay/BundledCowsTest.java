@@ -0,0 +1,67 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that the bundled cows compiled at build time are exactly what would be loaded and compiled at runtime.
+ */
+public class BundledCowsTest {
+
+	/**
+	 * Test every bundled cowfile against its generated template and the content Cowloader reads for it.
+	 */
+	@Test
+	public void testParity() throws IOException, URISyntaxException, CowParseException {
+		File cows = new File(BundledCowsTest.class.getResource("/cows/default.cow").toURI()).getParentFile();
+		int count = 0;
+		for (File cowfile : cows.listFiles()) {
+			String name = cowfile.getName();
+			if (!name.endsWith(Cowloader.COWFILE_EXT)) {
+				Assert.assertNull(name, BundledCows.getCompiled(name));
+				continue;
+			}
+			String content = read(cowfile);
+			Assert.assertEquals(name, content, Cowloader.load(name));
+			Assert.assertEquals(name, CowFormatter.compile(content), BundledCows.getCompiled(name));
+			Assert.assertTrue(name, BundledCows.getNames().contains(name.substring(0, name.length() - Cowloader.COWFILE_EXT.length())));
+			count++;
+		}
+		Assert.assertTrue(count > 0);
+		Assert.assertEquals(count, BundledCows.getNames().size());
+	}
+
+	/**
+	 * Test that Cowloader serves bundled cows from the generated class, reading the content only once.
+	 */
+	@Test
+	public void testCowloader() throws CowParseException {
+		Assert.assertSame(BundledCows.getCompiled("tux.cow"), Cowloader.loadCompiled("tux"));
+		Assert.assertSame(Cowloader.load("tux"), Cowloader.load("tux"));
+	}
+
+	/**
+	 * Read a cowfile as Cowloader historically read it.
+	 * @param cowfile The cowfile.
+	 * @return The content, with platform line separators.
+	 */
+	private static String read(final File cowfile) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cowfile), "UTF-8"));
+		try {
+			StringBuilder sb = new StringBuilder();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				sb.append(line).append(System.getProperty("line.separator"));
+			}
+			return sb.toString();
+		} finally {
+			reader.close();
+		}
+	}
+}
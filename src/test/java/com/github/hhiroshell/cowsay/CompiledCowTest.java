@@ -0,0 +1,88 @@
+package com.github.hhiroshell.cowsay;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests compiling cow templates into render plans, see {@link CowFormatter#compile(String)}.
+ */
+public class CompiledCowTest {
+
+	/**
+	 * A cowfile with comments, several assignments to $the_cow, escapes, both forms of each variable
+	 * and whitespace after the closing EOC.
+	 */
+	private static final String COWFILE = "## A test cow\n"
+			+ "$the_cow = \"not me\";\n"
+			+ "$the_cow = <<EOC;\n"
+			+ "nor me\n"
+			+ "EOC\n"
+			+ "$the_cow = <<\"EOC\";\n"
+			+ "  $thoughts \\\\ \\@ \\$x\n"
+			+ "  (${eyes})$eyes\n"
+			+ "   $tongue${tongue}|\n"
+			+ "EOC  \n\t\n";
+
+	/**
+	 * Test that the last assignment wins and the template is split at each variable, escapes removed.
+	 */
+	@Test
+	public void testCompile() throws CowParseException {
+		CompiledCow cow = CowFormatter.compile(COWFILE);
+		Assert.assertArrayEquals(new String[]{"\n  ", " \\ @ $x\n  (", ")", "\n   ", "", "|\n"}, cow.getLiterals());
+		Assert.assertArrayEquals(new CompiledCow.Slot[]{CompiledCow.Slot.THOUGHTS, CompiledCow.Slot.EYES, CompiledCow.Slot.EYES,
+			CompiledCow.Slot.TONGUE, CompiledCow.Slot.TONGUE}, cow.getSlots());
+		Assert.assertEquals("\n  o \\ @ $x\n  (Oo)Oo\n   UVUV|\n", cow.render(new CowFace("Oo", "UV"), "o"));
+		Assert.assertEquals(cow, CowFormatter.compile(COWFILE));
+	}
+
+	/**
+	 * Test that a cowfile without the ascii art cannot be compiled.
+	 */
+	@Test(expected = CowParseException.class)
+	public void testNoCow() throws CowParseException {
+		CowFormatter.compile("## not a cow\n$eyes = \"oo\";\n");
+	}
+
+	/**
+	 * Test that a template without a closing EOC, or with EOC in the art, is kept as it is.
+	 */
+	@Test
+	public void testEoc() throws CowParseException {
+		Assert.assertArrayEquals(new String[]{"\nEOCs\n"}, CowFormatter.compile("$the_cow = <<EOC\nEOCs\n").getLiterals());
+		Assert.assertArrayEquals(new String[]{"\n<EOC>\n"}, CowFormatter.compile("$the_cow=<<EOC;\n<EOC>\nEOC").getLiterals());
+	}
+
+	/**
+	 * Test that every bundled cow renders exactly as the substitutions which the render plan replaced.
+	 */
+	@Test
+	public void testBundledCows() throws CowParseException {
+		CowFace face = new CowFace("Oo", "UV");
+		for (String name : Cowloader.listAllCowfiles()) {
+			String cowfile = Cowloader.load(name);
+			Assert.assertEquals(name, substitute(cowfile, face, "o"), CowFormatter.compile(cowfile).render(face, "o"));
+		}
+		Assert.assertEquals(substitute(COWFILE, face, "o"), CowFormatter.compile(COWFILE).render(face, "o"));
+	}
+
+	/**
+	 * Renders a cowfile with a chain of string substitutions, the way cows were rendered before templates were compiled.
+	 * @param cowfile The content of the cowfile.
+	 * @param face The face.
+	 * @param thoughts The thoughts.
+	 * @return The cow.
+	 */
+	private static String substitute(final String cowfile, final CowFace face, final String thoughts) {
+		String result = cowfile.replaceFirst("(?s).*\\$the_cow\\s*=\\s*<<\"?EOC\"?;?", "");
+		result = result.replace("\\\\", "\\");
+		result = result.replace("\\@", "@");
+		result = result.replace("\\$", "$");
+		result = result.replace("${tongue}", face.getTongue());
+		result = result.replace("$tongue", face.getTongue());
+		result = result.replace("$thoughts", thoughts);
+		result = result.replace("${eyes}", face.getEyes());
+		result = result.replace("$eyes", face.getEyes());
+		return result.replaceAll("EOC\\s*$", "");
+	}
+}
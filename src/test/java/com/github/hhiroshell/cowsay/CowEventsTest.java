@@ -0,0 +1,114 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that cow loads and renders are recorded by Java Flight Recorder.
+ */
+public class CowEventsTest {
+
+	@After
+	public void tearDown() {
+		CowRenderer.resetCache();
+	}
+
+	/**
+	 * Test that a load and a render produce events with their details.
+	 */
+	@Test
+	public void testEvents() throws IOException, CowParseException {
+		Assert.assertTrue(CowEvents.AVAILABLE);
+		File dump = File.createTempFile("cowsay", ".jfr");
+		try {
+			Recording recording = new Recording();
+			try {
+				recording.enable("com.github.hhiroshell.cowsay.CowLoad").withoutThreshold();
+				recording.enable("com.github.hhiroshell.cowsay.CowRender").withoutThreshold();
+				recording.start();
+				CompiledCow cow = Cowloader.loadCompiled("tux");
+				CowFormatter.formatCow(cow, CowFace.getByMode("b"), new Message("Recorded", false));
+				recording.stop();
+				recording.dump(dump.toPath());
+			} finally {
+				recording.close();
+			}
+			List<RecordedEvent> events = RecordingFile.readAllEvents(dump.toPath());
+			RecordedEvent load = find(events, "com.github.hhiroshell.cowsay.CowLoad");
+			Assert.assertEquals("tux", load.getString("cowName"));
+			Assert.assertEquals(CowLoadEvent.BUNDLED, load.getString("source"));
+			RecordedEvent render = find(events, "com.github.hhiroshell.cowsay.CowRender");
+			Assert.assertEquals(CowRenderEvent.FORMATTED, render.getString("output"));
+			Assert.assertEquals(8, render.getInt("messageLength"));
+			Assert.assertEquals(Message.DEFAULT_WRAP, render.getInt("wordwrap"));
+			Assert.assertTrue(render.getInt("templateSize") > 0);
+			String expected = CowFormatter.formatCow(Cowloader.loadCompiled("tux"), CowFace.getByMode("b"), new Message("Recorded", false));
+			Assert.assertEquals(expected.length(), render.getLong("outputSize"));
+		} finally {
+			dump.delete();
+		}
+	}
+
+	/**
+	 * Test that cows served pre-encoded or from the render cache are recorded too, with their encoded size.
+	 */
+	@Test
+	public void testEncodedEvents() throws IOException, CowParseException {
+		CowRenderer.enableCache();
+		CompiledCow cow = Cowloader.loadCompiled("tux");
+		RenderRequest request = RenderRequest.builder().message("Recorded " + System.nanoTime()).cowfile("tux").build();
+		File dump = File.createTempFile("cowsay", ".jfr");
+		try {
+			Recording recording = new Recording();
+			try {
+				recording.enable("com.github.hhiroshell.cowsay.CowRender").withoutThreshold();
+				recording.start();
+				for (int i = 0; i < 3; i++) {
+					CowRenderer.encode(cow, request);  // asked for often enough to be admitted to the cache
+				}
+				recording.stop();
+				recording.dump(dump.toPath());
+			} finally {
+				recording.close();
+			}
+			long bytes = CowRenderer.render(request).getBytes("UTF-8").length;
+			List<RecordedEvent> events = RecordingFile.readAllEvents(dump.toPath());
+			RecordedEvent encoded = find(events, "com.github.hhiroshell.cowsay.CowRender");
+			Assert.assertEquals(CowRenderEvent.PRE_ENCODED, encoded.getString("output"));
+			Assert.assertEquals(bytes, encoded.getLong("outputBytes"));
+			Assert.assertEquals(Message.DEFAULT_WRAP, encoded.getInt("wordwrap"));
+			int cached = 0;
+			for (RecordedEvent event : events) {
+				if (CowRenderEvent.CACHED.equals(event.getString("output"))) {
+					Assert.assertEquals(bytes, event.getLong("outputBytes"));
+					cached++;
+				}
+			}
+			Assert.assertTrue(cached > 0);
+		} finally {
+			dump.delete();
+		}
+	}
+
+	/**
+	 * Find the first event of a type.
+	 * @param events The recorded events.
+	 * @param name The name of the event type.
+	 * @return The event.
+	 */
+	private static RecordedEvent find(final List<RecordedEvent> events, final String name) {
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals(name)) {
+				return event;
+			}
+		}
+		throw new AssertionError("No " + name + " event was recorded");
+	}
+}
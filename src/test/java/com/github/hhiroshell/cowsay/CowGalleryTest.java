@@ -0,0 +1,76 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Assert;
+import org.junit.Test;
+import picocli.CommandLine;
+
+/**
+ * Tests that the gallery renders every cow as single invocations would, in order of name.
+ */
+public class CowGalleryTest {
+	private static final String NL = System.getProperty("line.separator");
+
+	/**
+	 * Test of run method, of class CowGallery, with given cows.
+	 */
+	@Test
+	public void testRun() throws IOException {
+		StringBuilder out = new StringBuilder();
+		CowGallery gallery = new CowGallery(RenderRequest.builder().message("Hello").build(), "%" + NL);
+		Assert.assertEquals(2, gallery.run(new String[]{"default", "tux"}, out));
+		String expResult = "default" + NL + CowsayTest.loadExpected("cowsayHello.txt") + "%" + NL
+				+ "tux" + NL + CowsayTest.loadExpected("cowsayTux.txt");
+		Assert.assertEquals(expResult, out.toString());
+	}
+
+	/**
+	 * Test that every available cow is rendered, in order, exactly as it would be rendered on its own.
+	 */
+	@Test
+	public void testAllCows() throws IOException, CowParseException {
+		RenderRequest.Builder builder = RenderRequest.builder().message("All together now").mode("b").thought(true);
+		StringBuilder out = new StringBuilder();
+		String[] names = Cowloader.listAllCowfiles();
+		Assert.assertEquals(names.length, new CowGallery(builder.build(), null).run(out));
+		StringBuilder expected = new StringBuilder();
+		for (String name : names) {
+			expected.append(name).append(NL).append(CowRenderer.render(builder.cowfile(name).build()));
+		}
+		Assert.assertEquals(expected.toString(), out.toString());
+	}
+
+	/**
+	 * Test that piped lines are joined as they are for a single cow, so the bubbles match with and without -n.
+	 */
+	@Test
+	public void testPipedInput() throws IOException {
+		InputStream stdin = System.in;
+		try {
+			for (String[] args : new String[][]{{"--gallery", "-f", "tux"}, {"--gallery", "-n", "-f", "tux"}}) {
+				Cowsay cowsay = new Cowsay();
+				new CommandLine(cowsay).parseArgs(args);
+				System.setIn(new ByteArrayInputStream("Hello\nthere".getBytes("UTF-8")));
+				String expected = cowsay.say();
+				System.setIn(new ByteArrayInputStream("Hello\nthere".getBytes("UTF-8")));
+				StringBuilder out = new StringBuilder();
+				cowsay.sayGallery(out);
+				Assert.assertTrue(out.toString(), out.toString().contains("tux" + NL + expected));
+			}
+		} finally {
+			System.setIn(stdin);
+		}
+	}
+
+	/**
+	 * Test that nothing is rendered without a message.
+	 */
+	@Test
+	public void testEmpty() throws IOException {
+		StringBuilder out = new StringBuilder();
+		Assert.assertEquals(0, new CowGallery(RenderRequest.builder().message("").build(), null).run(out));
+		Assert.assertEquals(0, out.length());
+	}
+}
@@ -0,0 +1,120 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the COWPATH index.
+ */
+public class CowIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Test of resolve method, of class CowIndex.
+	 */
+	@Test
+	public void testResolve() throws IOException {
+		File first = folder.newFolder("first");
+		File second = folder.newFolder("second");
+		File sheep = createCowfile(first, "sheep.cow");
+		createCowfile(second, "sheep.cow");
+		File moose = createCowfile(second, "moose.cow");
+		createCowfile(second, "README");
+		CowIndex index = new CowIndex(Arrays.asList(first, second));
+		Assert.assertEquals("Earlier COWPATH entries take precedence", sheep, index.resolve("sheep.cow"));
+		Assert.assertEquals(moose, index.resolve("moose.cow"));
+		Assert.assertNull(index.resolve("README"));
+		Assert.assertEquals(2, index.getNames().size());
+	}
+
+	/**
+	 * Test of fromCowPath method, of class CowIndex.
+	 */
+	@Test
+	public void testFromCowPath() throws IOException {
+		File first = folder.newFolder("first");
+		File second = folder.newFolder("second");
+		File tux = createCowfile(second, "tux.cow");
+		CowIndex index = CowIndex.fromCowPath(first.getPath() + File.pathSeparator + second.getPath());
+		Assert.assertEquals(Arrays.asList(first, second), index.getDirectories());
+		Assert.assertEquals(tux, index.resolve("tux.cow"));
+		Assert.assertTrue(CowIndex.fromCowPath(null).getNames().isEmpty());
+	}
+
+	/**
+	 * Test of rescan method, of class CowIndex.
+	 */
+	@Test
+	public void testRescan() throws IOException {
+		File dir = folder.newFolder("cows");
+		CowIndex index = new CowIndex(Arrays.asList(dir));
+		Assert.assertNull(index.resolve("kitty.cow"));
+		File kitty = createCowfile(dir, "kitty.cow");
+		index.rescan();
+		Assert.assertEquals(kitty, index.resolve("kitty.cow"));
+	}
+
+	/**
+	 * Test of watch method, of class CowIndex.
+	 */
+	@Test
+	public void testWatch() throws IOException, InterruptedException {
+		File first = folder.newFolder("first");
+		File second = folder.newFolder("second");
+		File lower = createCowfile(second, "bunny.cow");
+		CowIndex index = new CowIndex(Arrays.asList(first, second));
+		try {
+			index.watch();
+			Assert.assertTrue(index.isWatching());
+			File upper = createCowfile(first, "bunny.cow");
+			Assert.assertTrue(awaitResolved(index, "bunny.cow", upper));
+			Assert.assertTrue(upper.delete());
+			Assert.assertTrue("Falls back to the next COWPATH entry", awaitResolved(index, "bunny.cow", lower));
+			Assert.assertTrue(lower.delete());
+			Assert.assertTrue(awaitResolved(index, "bunny.cow", null));
+		} finally {
+			index.close();
+		}
+		Assert.assertFalse(index.isWatching());
+	}
+
+	/**
+	 * Waits for the watcher to catch up with a change.
+	 * @param index The watched index.
+	 * @param cowName The cowfile name to resolve.
+	 * @param expected The file the name should resolve to, or null if it should not resolve.
+	 * @return true if the name resolved as expected before giving up.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	private static boolean awaitResolved(final CowIndex index, final String cowName, final File expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30000;  // some platforms poll rather than receive notifications
+		while (System.currentTimeMillis() < deadline) {
+			File actual = index.resolve(cowName);
+			if (expected == null ? actual == null : expected.equals(actual)) {
+				return true;
+			}
+			Thread.sleep(20);
+		}
+		return false;
+	}
+
+	/**
+	 * Creates an (empty) file in the given directory.
+	 * @param dir The directory to create the file in.
+	 * @param name The name of the file.
+	 * @return The new file.
+	 * @throws IOException If the file could not be created.
+	 */
+	static File createCowfile(final File dir, final String name) throws IOException {
+		File cowfile = new File(dir, name);
+		Assert.assertTrue(cowfile.createNewFile());
+		return cowfile;
+	}
+}
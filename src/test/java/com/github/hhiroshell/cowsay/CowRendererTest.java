@@ -0,0 +1,148 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests rendering through immutable RenderRequests.
+ */
+public class CowRendererTest {
+
+	/**
+	 * Test of render method, of class CowRenderer, against the commandline's expected output.
+	 */
+	@Test
+	public void testRender() throws CowParseException {
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayHello.txt"), CowRenderer.render(request("Hello").build()));
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayTux.txt"), CowRenderer.render(request("Hello").cowfile("tux").build()));
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayTongueEyes.txt"),
+				CowRenderer.render(request("Hello").eyes("QQ").tongue("V").build()));
+		Assert.assertEquals(CowsayTest.loadExpected("cowthinkHello.txt"), CowRenderer.render(request("Hello").thought(true).build()));
+		Assert.assertEquals("", CowRenderer.render(request("").build()));
+	}
+
+	/**
+	 * Test of render method, of class CowRenderer, writing to a Writer and to a byte channel.
+	 */
+	@Test
+	public void testRenderToOutput() throws CowParseException, IOException {
+		RenderRequest request = request("Grüß Gott").cowfile("tux").build();
+		String expected = CowRenderer.render(request);
+		StringWriter writer = new StringWriter();
+		CowRenderer.render(request, writer);
+		Assert.assertEquals(expected, writer.toString());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CowRenderer.render(request, Channels.newChannel(bytes));
+		Assert.assertArrayEquals(expected.getBytes("UTF-8"), bytes.toByteArray());
+		bytes.reset();
+		CowRenderer.render(request("").build(), Channels.newChannel(bytes));
+		Assert.assertEquals(0, bytes.size());
+	}
+
+	/**
+	 * Test that fixed faces are pre-encoded once and written with the same result as rendering.
+	 */
+	@Test
+	public void testEncoded() throws CowParseException, IOException {
+		CompiledCow cow = Cowloader.loadCompiled("tux");
+		for (String mode : new String[]{null, "b", "d"}) {
+			RenderRequest request = request("Grüß Gott").cowfile("tux").mode(mode).thought(true).build();
+			byte[] body = cow.getEncoded(request.getFace(), "o");
+			Assert.assertSame(body, cow.getEncoded(request.getFace(), "o"));
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			CowRenderer.write(Channels.newChannel(bytes), CowRenderer.encode(cow, request));
+			Assert.assertEquals(CowRenderer.render(request), new String(bytes.toByteArray(), "UTF-8"));
+		}
+		Assert.assertNull(cow.getEncoded(new CowFace("QQ", "V"), "o"));
+	}
+
+	/**
+	 * Test that a mode takes precedence over custom eyes, as it does on the commandline.
+	 */
+	@Test
+	public void testModeBeatsEyes() throws CowParseException {
+		RenderRequest request = request("Hello").mode("b").eyes("QQ").build();
+		Assert.assertSame(CowFace.getByMode("b"), request.getFace());
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayBorg.txt"), CowRenderer.render(request));
+	}
+
+	/**
+	 * Test that an unknown mode is rejected when the request is built.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownMode() {
+		request("Hello").mode("1");
+	}
+
+	/**
+	 * Test that requests built from the same values are equal.
+	 */
+	@Test
+	public void testEquals() {
+		RenderRequest a = request("Hello").eyes("QQ").wordwrap(20).build();
+		RenderRequest b = request("Hello").eyes("QQ").wordwrap(20).build();
+		Assert.assertEquals(a, b);
+		Assert.assertEquals(a.hashCode(), b.hashCode());
+		Assert.assertNotEquals(a, request("Hello").eyes("QQ").nowrap(true).build());
+		Assert.assertEquals(Message.DEFAULT_WRAP, request("Hello").build().getWordwrap());
+	}
+
+	/**
+	 * Test that the predefined cow modes cannot be altered.
+	 */
+	@Test(expected = UnsupportedOperationException.class)
+	public void testCowModesUnmodifiable() {
+		CowFace.COW_MODES.put("x", new CowFace("xx", "xx"));
+	}
+
+	/**
+	 * Test that many threads can share requests and render at once.
+	 */
+	@Test
+	public void testConcurrentRender() throws Exception {
+		final RenderRequest[] requests = {
+			request("Hello").build(),
+			request("Hello").cowfile("tux").build(),
+			request("Hello").mode("b").build(),
+			request("Hello").thought(true).build()
+		};
+		final String[] expected = {"cowsayHello.txt", "cowsayTux.txt", "cowsayBorg.txt", "cowthinkHello.txt"};
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 400; i++) {
+				final RenderRequest request = requests[i % requests.length];
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws CowParseException {
+						return CowRenderer.render(request);
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				Assert.assertEquals(CowsayTest.loadExpected(expected[i % expected.length]), results.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Start a request for a message.
+	 * @param message The message.
+	 * @return A builder with the message set.
+	 */
+	private static RenderRequest.Builder request(final String message) {
+		return RenderRequest.builder().message(message);
+	}
+}
@@ -0,0 +1,64 @@
+package com.github.hhiroshell.cowsay;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the size-bounded cowfile cache.
+ */
+public class CowfileCacheTest {
+
+	/**
+	 * Test of get and put methods, of class CowfileCache.
+	 */
+	@Test
+	public void testHitsAndMisses() {
+		CowfileCache cache = new CowfileCache(1024);
+		Assert.assertNull(cache.get("bundled:default.cow"));
+		cache.put("bundled:default.cow", "moo");
+		Assert.assertEquals("moo", cache.get("bundled:default.cow").getContent());
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(1, cache.getSize());
+	}
+
+	/**
+	 * Test of least recently used eviction, of class CowfileCache.
+	 */
+	@Test
+	public void testEviction() {
+		CowfileCache cache = new CowfileCache(40);  // room for two 5 char cowfiles
+		cache.put("a", "aaaaa");
+		cache.put("b", "bbbbb");
+		cache.get("a");  // b is now least recently used
+		cache.put("c", "ccccc");
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertNotNull(cache.get("a"));
+		Assert.assertNull(cache.get("b"));
+		Assert.assertNotNull(cache.get("c"));
+		Assert.assertEquals(40, cache.getWeight());
+	}
+
+	/**
+	 * Test that a cowfile larger than the whole cache is not retained.
+	 */
+	@Test
+	public void testOversized() {
+		CowfileCache cache = new CowfileCache(8);
+		Assert.assertEquals("moo", cache.put("a", "moo").getContent());
+		Assert.assertEquals(0, cache.getSize());
+		Assert.assertEquals(0, cache.getWeight());
+	}
+
+	/**
+	 * Test that Cowloader serves repeated loads from the cache.
+	 */
+	@Test
+	public void testCowloaderCaches() {
+		String first = Cowloader.load("tux");
+		long hits = Cowloader.getCache().getHits();
+		String second = Cowloader.load("tux");
+		Assert.assertSame(first, second);
+		Assert.assertEquals(hits + 1, Cowloader.getCache().getHits());
+	}
+}
@@ -0,0 +1,117 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Random;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests reading cowfiles as UTF-8 with platform line breaks.
+ */
+public class CowfileReaderTest {
+	private static final String NL = System.getProperty("line.separator");
+
+	/**
+	 * Test that every kind of line break becomes the platform line separator, as BufferedReader.readLine would.
+	 */
+	@Test
+	public void testLineBreaks() throws IOException {
+		Assert.assertEquals("", read(""));
+		Assert.assertEquals("moo" + NL, read("moo"));
+		Assert.assertEquals("a" + NL + "b" + NL + "c" + NL + "d" + NL, read("a\nb\r\nc\rd\n"));
+		Assert.assertEquals(NL + NL + NL + "x" + NL, read("\r\n\r\r\nx\r\n"));
+		Assert.assertEquals(NL + NL, read("\n\n"));
+	}
+
+	/**
+	 * Test that the content is decoded as UTF-8, including characters split across reads, whatever the platform charset.
+	 */
+	@Test
+	public void testUtf8() throws IOException {
+		Assert.assertEquals("Gr\u00fc\u00df \u725b \ud83d\udc04" + NL, read("Gr\u00fc\u00df \u725b \ud83d\udc04"));
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			sb.append("\u725b\ud83d\udc04\r\n");
+		}
+		Assert.assertEquals(sb.toString().replace("\r\n", NL), read(sb.toString()));
+		Assert.assertEquals("a\ufffdb" + NL, CowfileReader.read(new ByteArrayInputStream(new byte[]{'a', (byte) 0xff, 'b'})));
+	}
+
+	/**
+	 * Test that reading from a file, memory-mapped or not, matches the line by line reading it replaced.
+	 */
+	@Test
+	public void testFiles() throws IOException {
+		Random random = new Random(42);
+		String alphabet = "moo \u00fc\u725b\ud83d\udc04\n\r\n\r";
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 40000; i++) {
+			int index = random.nextInt(alphabet.length());
+			if (Character.isHighSurrogate(alphabet.charAt(index))) {
+				sb.append(alphabet, index, index + 2);
+			} else if (!Character.isLowSurrogate(alphabet.charAt(index))) {
+				sb.append(alphabet.charAt(index));
+			}
+		}
+		String expected = readLines(sb.toString());
+		File cowfile = File.createTempFile("cowfile", ".cow");
+		try {
+			OutputStream out = new FileOutputStream(cowfile);
+			try {
+				out.write(sb.toString().getBytes("UTF-8"));
+			} finally {
+				out.close();
+			}
+			Assert.assertEquals(expected, CowfileReader.read(cowfile));
+			Assert.assertEquals(expected, CowfileReader.read(cowfile, 1024));  // mapped
+		} finally {
+			cowfile.delete();
+		}
+	}
+
+	/**
+	 * Test that bundled cowfiles read as resources match the line by line reading it replaced.
+	 */
+	@Test
+	public void testResource() throws IOException {
+		String content = CowfileReader.read(CowfileReaderTest.class.getResourceAsStream("/cows/tux.cow"));
+		InputStream in = CowfileReaderTest.class.getResourceAsStream("/cows/tux.cow");
+		try {
+			Assert.assertEquals(readLines(IOUtils.toString(in, "UTF-8")), content);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a string's UTF-8 bytes with CowfileReader.
+	 * @param content The content.
+	 * @return What CowfileReader made of it.
+	 */
+	private static String read(final String content) throws IOException {
+		return CowfileReader.read(new ByteArrayInputStream(content.getBytes("UTF-8")));
+	}
+
+	/**
+	 * Reads a string line by line, the way cowfiles were read before.
+	 * @param content The content.
+	 * @return The lines, each followed by the platform line separator.
+	 */
+	private static String readLines(final String content) throws IOException {
+		BufferedReader reader = new BufferedReader(new StringReader(content));
+		StringBuilder sb = new StringBuilder();
+		String line;
+		while ((line = reader.readLine()) != null) {
+			sb.append(line).append(NL);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,76 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import picocli.CommandLine;
+
+/**
+ * Tests batch mode produces the same output as single invocations.
+ */
+public class CowsayBatchTest {
+
+	/**
+	 * Test of run method, of class CowsayBatch, with plain and JSON records.
+	 */
+	@Test
+	public void testRun() throws IOException {
+		String records = "Hello\n"
+				+ "\n"
+				+ "{\"f\": \"tux\", \"message\": \"Hello\"}\n"
+				+ "{\"b\": true, \"message\": \"Hello\"}\n";
+		StringWriter out = new StringWriter();
+		int count = new CowsayBatch(Collections.<String, String>emptyMap(), "%\n").run(new BufferedReader(new StringReader(records)), out);
+		Assert.assertEquals(3, count);
+		String expResult = CowsayTest.loadExpected("cowsayHello.txt") + "%\n"
+				+ CowsayTest.loadExpected("cowsayTux.txt") + "%\n"
+				+ CowsayTest.loadExpected("cowsayBorg.txt");
+		Assert.assertEquals(expResult, out.toString());
+	}
+
+	/**
+	 * Test that records inherit the commandline options and may override them.
+	 */
+	@Test
+	public void testDefaults() throws IOException, CowParseException {
+		Cowsay cowsay = new Cowsay();
+		new CommandLine(cowsay).parseArgs("--batch", "-f", "tux");
+		CowsayBatch batch = new CowsayBatch(cowsay.toOptions(), null);
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayTux.txt"), batch.render("Hello"));
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayHello.txt"), batch.render("{\"f\": \"default\", \"message\": \"Hello\"}"));
+		Assert.assertNull(batch.render("{\"f\": \"default\"}"));
+	}
+
+	/**
+	 * Test that a record's mode replaces the commandline's mode instead of being combined with it.
+	 */
+	@Test
+	public void testModeOverride() throws IOException, CowParseException {
+		Cowsay cowsay = new Cowsay();
+		new CommandLine(cowsay).parseArgs("--batch", "-d");
+		CowsayBatch batch = new CowsayBatch(cowsay.toOptions(), null);
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayDead.txt"), batch.render("Hello"));
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayBorg.txt"), batch.render("{\"b\": true, \"message\": \"Hello\"}"));
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayHello.txt"), batch.render("{\"d\": false, \"message\": \"Hello\"}"));
+		cowsay = new Cowsay();
+		new CommandLine(cowsay).parseArgs("--batch", "-b");
+		batch = new CowsayBatch(cowsay.toOptions(), null);
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayDead.txt"), batch.render("{\"d\": true, \"message\": \"Hello\"}"));
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayYoung.txt"), batch.render("{\"y\": true, \"message\": \"Hello\"}"));
+	}
+
+	/**
+	 * Test that a bad record is skipped without spoiling the rest of the batch.
+	 */
+	@Test
+	public void testBadRecord() throws IOException {
+		StringWriter out = new StringWriter();
+		int count = new CowsayBatch(Collections.<String, String>emptyMap(), "").run(new BufferedReader(new StringReader("{\"W\": \"moo\"\nHello\n")), out);
+		Assert.assertEquals(1, count);
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayHello.txt"), out.toString());
+	}
+}
@@ -0,0 +1,130 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import org.apache.commons.io.IOUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the HTTP render server against the same expected output as the commandline.
+ */
+public class CowsayServerTest {
+
+	private static CowsayServer server;
+
+	@BeforeClass
+	public static void setUpClass() throws IOException {
+		server = new CowsayServer(0);
+		server.start();
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		server.stop();
+	}
+
+	/**
+	 * Test of a GET request with query parameters.
+	 */
+	@Test
+	public void testGet() throws IOException {
+		HttpURLConnection connection = open("/?message=Hello");
+		Assert.assertEquals(200, connection.getResponseCode());
+		String expected = CowsayTest.loadExpected("cowsayHello.txt");
+		Assert.assertEquals(expected.getBytes("UTF-8").length, connection.getContentLength());  // pre-encoded, so not chunked
+		Assert.assertEquals(expected, read(connection.getInputStream()));
+	}
+
+	/**
+	 * Test of a GET request with a mode flag and a named cowfile.
+	 */
+	@Test
+	public void testGetOptions() throws IOException {
+		HttpURLConnection connection = open("/?b&m=Hello");
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayBorg.txt"), read(connection.getInputStream()));
+		connection = open("/?f=tux&m=Hello");
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayTux.txt"), read(connection.getInputStream()));
+	}
+
+	/**
+	 * Test of a POST request with a JSON body.
+	 */
+	@Test
+	public void testPostJson() throws IOException {
+		HttpURLConnection connection = open("/");
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "application/json");
+		OutputStream out = connection.getOutputStream();
+		out.write("{\"T\": \"V\", \"e\": \"QQ\", \"message\": \"Hello\"}".getBytes("UTF-8"));
+		out.close();
+		Assert.assertEquals(200, connection.getResponseCode());
+		Assert.assertEquals(CowsayTest.loadExpected("cowsayTongueEyes.txt"), read(connection.getInputStream()));
+	}
+
+	/**
+	 * Test that the metrics endpoint reports the stages and caches.
+	 */
+	@Test
+	public void testStats() throws IOException {
+		HttpURLConnection connection = open("/stats");
+		Assert.assertEquals(200, connection.getResponseCode());
+		String report = read(connection.getInputStream());
+		Assert.assertTrue(report, report.contains("render "));
+		Assert.assertTrue(report, report.contains("Cowfile cache: "));
+		Assert.assertTrue(report, report.contains("Render cache: "));
+	}
+
+	/**
+	 * Test of requests which should be rejected.
+	 */
+	@Test
+	public void testBadRequests() throws IOException {
+		Assert.assertEquals(400, open("/").getResponseCode());
+		Assert.assertEquals(400, open("/?W=moo&message=Hello").getResponseCode());
+		Assert.assertEquals(400, open("/?f=../../tux&message=Hello").getResponseCode());
+		Assert.assertEquals(400, open("/?f=%2Ftmp%2Ftux.cow&message=Hello").getResponseCode());
+		Assert.assertEquals(400, open("/?f=..%5Ctux&message=Hello").getResponseCode());
+		HttpURLConnection connection = open("/?message=Hello");
+		connection.setRequestMethod("DELETE");
+		Assert.assertEquals(405, connection.getResponseCode());
+		Assert.assertEquals(404, open("/favicon.ico").getResponseCode());
+		Assert.assertEquals(404, open("/stats/moo").getResponseCode());
+		connection = open("/");
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setFixedLengthStreamingMode(1024 * 1024 + 1);
+		OutputStream out = connection.getOutputStream();
+		out.write(new byte[1024 * 1024 + 1]);
+		out.close();
+		Assert.assertEquals(413, connection.getResponseCode());
+	}
+
+	/**
+	 * Opens a connection to the test server.
+	 * @param path The path and query to request.
+	 * @return The connection.
+	 */
+	private static HttpURLConnection open(final String path) throws IOException {
+		return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+	}
+
+	/**
+	 * Reads a response body.
+	 * @param in The response stream.
+	 * @return The response body.
+	 */
+	private static String read(final InputStream in) throws IOException {
+		try {
+			return IOUtils.toString(in, "UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+}
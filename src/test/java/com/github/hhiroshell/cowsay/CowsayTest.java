@@ -182,6 +182,48 @@ public class CowsayTest {
 		Assert.assertEquals(expResult, result);
 	}
 
+	/**
+	 * Test of say method, of class Cowsay, thinking instead of saying.
+	 */
+	@Test
+	public void testThink() {
+		System.out.println("cowsay --cowthink Hello");
+		String expResult = loadExpected("cowthinkHello.txt");
+		String[] args = new String[]{"--cowthink", "Hello"};
+		Cowsay cowsay = new Cowsay();
+		new CommandLine(cowsay).parseArgs(args);
+		String result = cowsay.say();
+		Assert.assertEquals(expResult, result);
+	}
+
+	/**
+	 * Test of say method, of class Cowsay, thinking a multi line message.
+	 */
+	@Test
+	public void testThinkMulti() {
+		System.out.println("cowsay --cowthink msg");
+		String expResult = loadExpected("cowthinkMulti.txt");
+		String[] args = new String[]{"--cowthink", "Moo moo moo moo moo moo moo moo moo moo moo moo moo moo moo moo moo moo moo"};
+		Cowsay cowsay = new Cowsay();
+		new CommandLine(cowsay).parseArgs(args);
+		String result = cowsay.say();
+		Assert.assertEquals(expResult, result);
+	}
+
+	/**
+	 * Test of say method, of class Cowsay, with the thought bubble but the cow still saying it.
+	 */
+	@Test
+	public void testBubbleStyle() {
+		System.out.println("cowsay --bubble think Hello");
+		String expResult = loadExpected("cowthinkHello.txt").replace("o   ^__^", "\\   ^__^").replace(" o  (oo)", " \\  (oo)");
+		String[] args = new String[]{"--bubble", "think", "Hello"};
+		Cowsay cowsay = new Cowsay();
+		new CommandLine(cowsay).parseArgs(args);
+		String result = cowsay.say();
+		Assert.assertEquals(expResult, result);
+	}
+
 	/**
 	 * Test of say method, of class Cowsay with named cow.
 	 */
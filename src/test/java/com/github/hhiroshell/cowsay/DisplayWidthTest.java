@@ -0,0 +1,68 @@
+package com.github.hhiroshell.cowsay;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that text is measured in terminal columns.
+ */
+public class DisplayWidthTest {
+
+	/**
+	 * Test of of method, of class DisplayWidth.
+	 */
+	@Test
+	public void testOf() {
+		Assert.assertEquals(1, DisplayWidth.of('m'));
+		Assert.assertEquals(1, DisplayWidth.of('\t'));
+		Assert.assertEquals(1, DisplayWidth.of(0xE9));  // e acute
+		Assert.assertEquals(1, DisplayWidth.of(0xFF71));  // halfwidth katakana a
+		Assert.assertEquals(2, DisplayWidth.of(0x3042));  // hiragana a
+		Assert.assertEquals(2, DisplayWidth.of(0x725B));  // ideograph cow
+		Assert.assertEquals(2, DisplayWidth.of(0xAC00));  // hangul syllable ga
+		Assert.assertEquals(2, DisplayWidth.of(0xFF21));  // fullwidth A
+		Assert.assertEquals(2, DisplayWidth.of(0x1F404));  // cow emoji
+		Assert.assertEquals(2, DisplayWidth.of(0x2A6D6));  // supplementary ideograph
+		Assert.assertEquals(0, DisplayWidth.of(0x0301));  // combining acute accent
+		Assert.assertEquals(0, DisplayWidth.of(0x200D));  // zero width joiner
+		Assert.assertEquals(0, DisplayWidth.of(0xFE0F));  // variation selector
+		Assert.assertEquals(0, DisplayWidth.of(0x302A));  // ideographic tone mark, wide but combining
+		Assert.assertEquals(1, DisplayWidth.of(0x10FFFF));
+	}
+
+	/**
+	 * Test of width method, of class DisplayWidth.
+	 */
+	@Test
+	public void testWidth() {
+		Assert.assertEquals(0, DisplayWidth.width("", 0, 0));
+		Assert.assertEquals(3, DisplayWidth.width("moo", 0, 3));
+		Assert.assertEquals(8, DisplayWidth.width("\u725b\u4e73 moo", 0, 6));
+		Assert.assertEquals(4, DisplayWidth.width("\ud83d\udc04\ud83d\udc04", 0, 4));
+		Assert.assertEquals(1, DisplayWidth.width("e\u0301", 0, 2));
+		Assert.assertEquals(1, DisplayWidth.width("\ud83d", 0, 1));  // a lone surrogate is shown as one replacement character
+	}
+
+	/**
+	 * Test of fit method, of class DisplayWidth.
+	 */
+	@Test
+	public void testFit() {
+		Assert.assertEquals(2, DisplayWidth.fit("moo", 0, 3, 2));
+		Assert.assertEquals(3, DisplayWidth.fit("moo", 0, 3, 5));
+		Assert.assertEquals(1, DisplayWidth.fit("\u725b\u4e73", 0, 2, 3));
+		Assert.assertEquals(0, DisplayWidth.fit("\u725b", 0, 1, 1));
+		Assert.assertEquals(2, DisplayWidth.fit("\ud83d\udc04\ud83d\udc04", 0, 4, 3));  // never splits a pair
+		Assert.assertEquals(3, DisplayWidth.fit("e\u0301\u0301x", 0, 4, 1));  // keeps the marks with their letter
+	}
+
+	/**
+	 * Test of isAscii method, of class DisplayWidth.
+	 */
+	@Test
+	public void testIsAscii() {
+		Assert.assertTrue(DisplayWidth.isAscii("moo\t\u007f", 0, 5));
+		Assert.assertFalse(DisplayWidth.isAscii("mo\u00f6", 0, 3));
+		Assert.assertTrue(DisplayWidth.isAscii("mo\u00f6", 0, 2));
+	}
+}
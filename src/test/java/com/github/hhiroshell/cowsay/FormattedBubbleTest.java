@@ -0,0 +1,43 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.IOException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that a formatted bubble can be reused across cows and faces.
+ */
+public class FormattedBubbleTest {
+
+	/**
+	 * Test that one formatted bubble renders every cow and face as formatting the message each time would.
+	 */
+	@Test
+	public void testReuse() throws CowParseException, IOException {
+		Message message = new Message("The same bubble on every cow, whatever its face", true);
+		FormattedBubble bubble = message.format();
+		Assert.assertEquals(message.getMessage(), bubble.getBubble());
+		Assert.assertEquals("o", bubble.getThoughts());
+		for (String name : new String[]{"default", "tux", "dragon"}) {
+			CompiledCow cow = Cowloader.loadCompiled(name);
+			for (String mode : new String[]{"b", "d", "y"}) {
+				CowFace face = CowFace.getByMode(mode);
+				String expected = CowFormatter.formatCow(cow, face, message);
+				Assert.assertEquals(expected, CowFormatter.formatCow(cow, face, bubble));
+				StringBuilder sb = new StringBuilder();
+				CowFormatter.formatCow(cow, face, bubble, sb);
+				Assert.assertEquals(expected, sb.toString());
+			}
+		}
+	}
+
+	/**
+	 * Test that the bubble is encoded once, as UTF-8.
+	 */
+	@Test
+	public void testEncoded() throws IOException {
+		FormattedBubble bubble = new Message("Gr\u00fc\u00df Gott", false).format();
+		Assert.assertArrayEquals(bubble.getBubble().getBytes("UTF-8"), bubble.getEncoded());
+		Assert.assertSame(bubble.getEncoded(), bubble.getEncoded());
+	}
+}
@@ -0,0 +1,84 @@
+package com.github.hhiroshell.cowsay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.MissingResourceException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that messages are looked up in the right language.
+ */
+public class I18nTest {
+
+	private static final String EN_NOWRAP = "The given message will not be word-wrapped";
+	private static final String DE_NOWRAP = "Die Text wird nicht umbrochen werden";
+
+	/**
+	 * Puts the default language back.
+	 */
+	@After
+	public void tearDown() {
+		I18n.setLanguage("en");
+	}
+
+	/**
+	 * Test of getMessage method, of class I18n, in the default language and after changing it.
+	 */
+	@Test
+	public void testDefaultLanguage() {
+		Assert.assertEquals(EN_NOWRAP, I18n.getMessage("n"));
+		I18n.setLanguage("de");
+		Assert.assertEquals(DE_NOWRAP, I18n.getMessage("n"));
+	}
+
+	/**
+	 * Test of getMessage method, of class I18n, with a given language.
+	 */
+	@Test
+	public void testLanguage() {
+		Assert.assertEquals(DE_NOWRAP, I18n.getMessage("de", "n"));
+		Assert.assertEquals(EN_NOWRAP, I18n.getMessage("en", "n"));
+		Assert.assertEquals("The cow will think instead of speak", I18n.getMessage("de", "cowthink"));  // not translated
+		Assert.assertEquals(EN_NOWRAP, I18n.getMessage("xx", "n"));  // no such language
+	}
+
+	/**
+	 * Test of getMessage method, of class I18n, with an unknown key.
+	 */
+	@Test(expected = MissingResourceException.class)
+	public void testMissing() {
+		I18n.getMessage("en", "no-such-key");
+	}
+
+	/**
+	 * Test that threads looking up different languages at once each get their own.
+	 */
+	@Test
+	public void testConcurrent() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < 64; i++) {
+				final boolean german = i % 2 == 0;
+				results.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						String message = I18n.getMessage(german ? "de" : "en", "n");
+						return message.equals(german ? DE_NOWRAP : EN_NOWRAP);
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				Assert.assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the render cache and its TinyLFU admission.
+ */
+public class RenderCacheTest {
+
+	/**
+	 * Test of get and put methods, of class RenderCache.
+	 */
+	@Test
+	public void testHitsAndMisses() throws CowParseException {
+		RenderCache cache = new RenderCache(4096);
+		CompiledCow cow = Cowloader.loadCompiled("default");
+		RenderRequest request = RenderRequest.builder().message("Moo").build();
+		Assert.assertNull(cache.get(cow, request));
+		Assert.assertTrue(cache.put(cow, request, ByteBuffer.wrap(new byte[]{'m'}), ByteBuffer.wrap(new byte[]{'o', 'o'})));
+		Assert.assertArrayEquals(new byte[]{'m', 'o', 'o'}, cache.get(cow, RenderRequest.builder().message("Moo").build()));
+		Assert.assertNull(cache.get(cow, RenderRequest.builder().message("Moo").thought(true).build()));
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(2, cache.getMisses());
+		Assert.assertEquals(1, cache.getSize());
+		Assert.assertEquals(1.0 / 3, cache.getHitRatio(), 0.001);
+		cache.clear();
+		Assert.assertEquals(0, cache.getSize());
+		Assert.assertEquals(0, cache.getWeight());
+	}
+
+	/**
+	 * Test that a cow rendered from a different compiled cowfile, e.g. after the cowfile was edited, is a miss.
+	 */
+	@Test
+	public void testCowIdentity() throws CowParseException {
+		RenderCache cache = new RenderCache(4096);
+		String cowfile = Cowloader.load("default");
+		CompiledCow before = CowFormatter.compile(cowfile);
+		RenderRequest request = RenderRequest.builder().message("Moo").build();
+		cache.put(before, request, ByteBuffer.wrap(new byte[]{'m'}));
+		Assert.assertNotNull(cache.get(before, request));
+		Assert.assertNull(cache.get(CowFormatter.compile(cowfile), request));
+	}
+
+	/**
+	 * Test that one-off messages do not displace frequently requested ones once the cache is full.
+	 */
+	@Test
+	public void testAdmission() throws CowParseException {
+		CompiledCow cow = Cowloader.loadCompiled("default");
+		byte[] output = new byte[100];
+		RenderCache cache = new RenderCache(1000);
+		int hot = 0;
+		for (int i = 0; cache.getRejections() == 0; i++) {
+			RenderRequest request = RenderRequest.builder().message("hot" + i).build();
+			for (int j = 0; j < 3; j++) {
+				cache.get(cow, request);
+			}
+			cache.put(cow, request, ByteBuffer.wrap(output));
+			hot = i;
+		}
+		Assert.assertTrue(hot > 0);
+		for (int i = 0; i < 100; i++) {
+			RenderRequest request = RenderRequest.builder().message("cold" + i).build();
+			Assert.assertNull(cache.get(cow, request));
+			Assert.assertFalse(cache.put(cow, request, ByteBuffer.wrap(output)));
+		}
+		for (int i = 0; i < hot; i++) {
+			Assert.assertNotNull(cache.get(cow, RenderRequest.builder().message("hot" + i).build()));
+		}
+		Assert.assertEquals(0, cache.getEvictions());
+		Assert.assertTrue(cache.getWeight() <= cache.getMaxWeight());
+	}
+
+	/**
+	 * Test that an entry which is asked for more than the entries in the cache evicts them, staying within bounds.
+	 */
+	@Test
+	public void testEviction() throws CowParseException {
+		CompiledCow cow = Cowloader.loadCompiled("default");
+		byte[] output = new byte[100];
+		RenderCache cache = new RenderCache(1000);
+		for (int i = 0; i < 20; i++) {
+			RenderRequest request = RenderRequest.builder().message("once" + i).build();
+			cache.get(cow, request);
+			cache.put(cow, request, ByteBuffer.wrap(output));
+			Assert.assertTrue(cache.getWeight() <= cache.getMaxWeight());
+		}
+		RenderRequest popular = RenderRequest.builder().message("popular").build();
+		for (int j = 0; j < 5; j++) {
+			cache.get(cow, popular);
+		}
+		Assert.assertTrue(cache.put(cow, popular, ByteBuffer.wrap(new byte[500])));
+		Assert.assertNotNull(cache.get(cow, popular));
+		Assert.assertTrue(cache.getEvictions() > 0);
+		Assert.assertTrue(cache.getWeight() <= cache.getMaxWeight());
+	}
+
+	/**
+	 * Test that a message too long to cache, or a disabled cache, which is the default, bypasses the cache.
+	 */
+	@Test
+	public void testAccepts() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i <= RenderCache.MAX_MESSAGE_LENGTH; i++) {
+			sb.append('m');
+		}
+		Assert.assertFalse(new RenderCache(4096).accepts(RenderRequest.builder().message(sb.toString()).build()));
+		Assert.assertTrue(new RenderCache(4096).accepts(RenderRequest.builder().message("Moo").build()));
+		Assert.assertFalse(new RenderCache(0).accepts(RenderRequest.builder().message("Moo").build()));
+		Assert.assertFalse(new RenderCache(RenderCache.DEFAULT_MAX_WEIGHT).accepts(RenderRequest.builder().message("Moo").build()));
+	}
+
+	/**
+	 * Test that a cached cow is rendered exactly as an uncached one, as a String and to a channel.
+	 */
+	@Test
+	public void testCowRendererCaches() throws CowParseException, IOException {
+		CowRenderer.enableCache();
+		Assert.assertTrue(CowRenderer.getCache().getMaxWeight() > 0);
+		RenderRequest request = RenderRequest.builder().message("Cache me").eyes("QQ").build();
+		String first = CowRenderer.render(request);
+		long hits = CowRenderer.getCache().getHits();
+		Assert.assertEquals(first, CowRenderer.render(request));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CowRenderer.render(request, Channels.newChannel(bytes));
+		Assert.assertEquals(first, new String(bytes.toByteArray(), "UTF-8"));
+		Assert.assertEquals(hits + 2, CowRenderer.getCache().getHits());
+	}
+}
@@ -0,0 +1,114 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the render stage timings and their histograms.
+ */
+public class RenderMetricsTest {
+
+	@After
+	public void tearDown() {
+		RenderMetrics.setEnabled(false);
+		RenderMetrics.reset();
+	}
+
+	/**
+	 * Test that every value falls in a bucket no wider than 1/32 of it, and that the buckets are contiguous.
+	 */
+	@Test
+	public void testBuckets() {
+		long[] values = {0, 1, 31, 32, 63, 64, 65, 127, 128, 1000, 123456789, Long.MAX_VALUE};
+		for (long value : values) {
+			int index = RenderMetrics.Histogram.indexOf(value);
+			long highest = RenderMetrics.Histogram.highestValueOf(index);
+			Assert.assertTrue(value + " <= " + highest, value <= highest);
+			Assert.assertTrue(value + " within " + highest, highest - value <= value / 32);
+			Assert.assertEquals(index, RenderMetrics.Histogram.indexOf(highest));
+			if (highest < Long.MAX_VALUE) {
+				Assert.assertEquals(index + 1, RenderMetrics.Histogram.indexOf(highest + 1));
+			}
+		}
+	}
+
+	/**
+	 * Test the percentiles, mean and maximum of a histogram.
+	 */
+	@Test
+	public void testPercentiles() {
+		RenderMetrics.Histogram histogram = new RenderMetrics.Histogram();
+		Assert.assertEquals(0, histogram.getPercentile(50));
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		Assert.assertEquals(1000, histogram.getCount());
+		Assert.assertEquals(500500.0, histogram.getMean(), 0.001);
+		Assert.assertEquals(1000000, histogram.getMax());
+		Assert.assertEquals(500000, histogram.getPercentile(50), 500000 / 32);
+		Assert.assertEquals(990000, histogram.getPercentile(99), 990000 / 32);
+		Assert.assertEquals(1000000, histogram.getPercentile(100));
+		histogram.reset();
+		Assert.assertEquals(0, histogram.getCount());
+	}
+
+	/**
+	 * Test that each stage of a render is timed only while metrics are enabled.
+	 */
+	@Test
+	public void testStages() throws CowParseException {
+		RenderRequest request = RenderRequest.builder().message("Time me, uncached " + System.nanoTime()).cowfile("tux").build();
+		RenderMetrics.reset();
+		CowRenderer.render(request);
+		for (RenderMetrics.Stage stage : RenderMetrics.Stage.values()) {
+			Assert.assertEquals(stage.name(), 0, RenderMetrics.getCount(stage));
+		}
+		RenderMetrics.setEnabled(true);
+		CowRenderer.render(RenderRequest.builder().message("Time me too " + System.nanoTime()).cowfile("tux").build());
+		Assert.assertEquals(1, RenderMetrics.getCount(RenderMetrics.Stage.RESOLVE));
+		Assert.assertEquals(1, RenderMetrics.getCount(RenderMetrics.Stage.WRAP));
+		Assert.assertEquals(1, RenderMetrics.getCount(RenderMetrics.Stage.BUBBLE));
+		Assert.assertEquals(1, RenderMetrics.getCount(RenderMetrics.Stage.BODY));
+		Assert.assertEquals(1, RenderMetrics.getCount(RenderMetrics.Stage.RENDER));
+		Assert.assertTrue(RenderMetrics.getMax(RenderMetrics.Stage.RENDER) > 0);
+		Assert.assertTrue(RenderMetrics.report().contains("bubble "));
+	}
+
+	/**
+	 * Test that a cow which is neither cached nor pre-encoded is rendered and timed once when streamed to a channel.
+	 */
+	@Test
+	public void testStreamedOnce() throws CowParseException, IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i <= RenderCache.MAX_MESSAGE_LENGTH; i++) {
+			sb.append(i % 8 == 7 ? ' ' : 'm');
+		}
+		RenderRequest request = RenderRequest.builder().message(sb.toString()).eyes("QQ").build();
+		RenderMetrics.setEnabled(true);
+		RenderMetrics.reset();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CowRenderer.render(request, Channels.newChannel(bytes));
+		Assert.assertEquals(1, RenderMetrics.getCount(RenderMetrics.Stage.RENDER));
+		Assert.assertEquals(1, RenderMetrics.getCount(RenderMetrics.Stage.WRAP));
+		Assert.assertEquals(1, RenderMetrics.getCount(RenderMetrics.Stage.BODY));
+		Assert.assertEquals(CowRenderer.render(request), new String(bytes.toByteArray(), "UTF-8"));
+	}
+
+	/**
+	 * Test that cowfiles which cannot be parsed are counted.
+	 */
+	@Test
+	public void testParseErrors() {
+		long errors = RenderMetrics.getParseErrors();
+		try {
+			CowFormatter.compile("not a cow");
+			Assert.fail("Expected a CowParseException");
+		} catch (CowParseException ex) {
+			Assert.assertEquals(errors + 1, RenderMetrics.getParseErrors());
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.github.hhiroshell.cowsay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that streamed messages are wrapped and bubbled exactly as buffered messages are.
+ */
+public class StreamingMessageTest {
+
+	/**
+	 * Compare streaming against Message for random input held in memory.
+	 */
+	@Test
+	public void testInMemory() throws IOException {
+		compareRandom("moo  \n", Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Compare streaming against Message for random input spilled to disk almost immediately.
+	 */
+	@Test
+	public void testSpilled() throws IOException {
+		compareRandom("moo  \n", 5);
+	}
+
+	/**
+	 * Compare streaming against Message for random input with wide and zero-width characters, in memory and spilled.
+	 */
+	@Test
+	public void testWide() throws IOException {
+		compareRandom("\u725b\u4e73 \ud83d\udc04e\u0301 moo\n", Integer.MAX_VALUE);
+		compareRandom("\u725b\u4e73 \ud83d\udc04e\u0301 moo\n", 5);
+	}
+
+	/**
+	 * Test that a surrogate pair split across reads of the spill file is still measured as one character.
+	 */
+	@Test
+	public void testLongSpill() throws IOException {
+		StringBuilder input = new StringBuilder("x");
+		for (int i = 0; i < 5000; i++) {
+			input.append("\ud83d\udc04 ");
+		}
+		for (int wrap : new int[]{0, 5, 40}) {
+			compare(input.toString(), wrap, 5);
+		}
+	}
+
+	/**
+	 * Test of some awkward cases: blank lines, runs of spaces, words longer than the wrap.
+	 */
+	@Test
+	public void testEdgeCases() throws IOException {
+		String[] inputs = {"Hello", "\nHello", "\n\n", "abc ", "   ", "Supercalifragilisticexpialidocious", "a  b\n\nc"};
+		for (String input : inputs) {
+			for (int wrap : new int[]{0, 1, 3, 40}) {
+				compare(input, wrap, Integer.MAX_VALUE);
+				compare(input, wrap, 1);
+			}
+		}
+	}
+
+	/**
+	 * Streams lots of random input through random wrap lengths.
+	 * @param alphabet The characters to make the input from, a surrogate pair is never split.
+	 * @param spillThreshold The number of chars to hold in memory.
+	 */
+	private static void compareRandom(final String alphabet, final int spillThreshold) throws IOException {
+		Random random = new Random(42);
+		for (int i = 0; i < 500; i++) {
+			StringBuilder input = new StringBuilder();
+			int length = random.nextInt(200);
+			for (int j = 0; j < length; j++) {
+				int index = alphabet.offsetByCodePoints(0, random.nextInt(alphabet.codePointCount(0, alphabet.length())));
+				input.appendCodePoint(alphabet.codePointAt(index));
+			}
+			compare(input.toString(), random.nextInt(12), spillThreshold);
+		}
+	}
+
+	/**
+	 * Checks that the streamed message matches the buffered message for the given input.
+	 * @param input The piped input.
+	 * @param wrap The wrap length.
+	 * @param spillThreshold The number of chars to hold in memory.
+	 */
+	private static void compare(final String input, final int wrap, final int spillThreshold) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new StringReader(input));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lines.add(line);
+		}
+		String joined = StringUtils.join(lines, " ");
+		String expected = "";
+		if (joined.length() > 0) {
+			Message message = new Message(joined, false);
+			message.setWordwrap((byte) wrap);
+			expected = message.getMessage();
+		}
+		StringBuilder actual = new StringBuilder();
+		StreamingMessage streaming = new StreamingMessage(wrap, false, spillThreshold);
+		try {
+			streaming.read(new BufferedReader(new StringReader(input)));
+			if (!streaming.isEmpty()) {
+				streaming.writeBubble(actual);
+			}
+		} finally {
+			streaming.close();
+		}
+		Assert.assertEquals("wrap " + wrap + " input '" + input + "'", expected, actual.toString());
+	}
+}
@@ -0,0 +1,135 @@
+package com.github.hhiroshell.cowsay;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.text.WordUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that WordWrapper wraps exactly as messages were historically wrapped.
+ */
+public class WordWrapperTest {
+
+	private static final String NEWLINE = System.getProperty("line.separator");
+
+	/**
+	 * Test of wrap method, of class WordWrapper, with random messages.
+	 */
+	@Test
+	public void testWrapRandom() {
+		Random random = new Random(42);
+		String alphabet = "moo  " + NEWLINE;
+		WordWrapper wrapper = new WordWrapper();
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder message = new StringBuilder();
+			int length = random.nextInt(120);
+			for (int j = 0; j < length; j++) {
+				message.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			compare(wrapper, message.toString(), random.nextInt(12));
+		}
+	}
+
+	/**
+	 * Test of wrap method, of class WordWrapper, with awkward messages.
+	 */
+	@Test
+	public void testWrapEdgeCases() {
+		String[] messages = {"", " ", "Hello", NEWLINE + "Hello", "Hello" + NEWLINE + NEWLINE, "abc ", "a  b" + NEWLINE + NEWLINE + "c",
+			"Moo moo moo moo moo moo moo moo moo moo moo moo moo moo moo moo moo moo moo", "Supercalifragilisticexpialidocious"};
+		WordWrapper wrapper = new WordWrapper();
+		for (String message : messages) {
+			for (int wrap : new int[]{0, 1, 3, 40}) {
+				compare(wrapper, message, wrap);
+			}
+		}
+	}
+
+	/**
+	 * Test that the longest line is measured correctly.
+	 */
+	@Test
+	public void testLongestLine() {
+		WordWrapper wrapper = new WordWrapper();
+		Assert.assertEquals(3, wrapper.wrap("foo bar baz", 5, NEWLINE));
+		Assert.assertEquals(3, wrapper.getLongestLine());
+		Assert.assertEquals(1, wrapper.wrap("", 5, NEWLINE));
+		Assert.assertEquals(0, wrapper.getLongestLine());
+	}
+
+	/**
+	 * Test that lines are wrapped by their width in columns rather than their length in chars.
+	 */
+	@Test
+	public void testWrapWide() {
+		WordWrapper wrapper = new WordWrapper();
+		assertLines(wrapper, "\u725b\u4e73\u3092\u98f2\u3080 moo", 4, "\u725b\u4e73", "\u3092\u98f2", "\u3080", "moo");
+		Assert.assertEquals(4, wrapper.getLongestLine());
+		Assert.assertEquals(2, wrapper.getLineWidth(2));
+		assertLines(wrapper, "\ud83d\udc04\ud83d\udc04 \ud83d\udc04", 3, "\ud83d\udc04", "\ud83d\udc04", "\ud83d\udc04");
+		assertLines(wrapper, "\u725bx\u4e73", 1, "\u725b", "x", "\u4e73");  // wider than the wrap, but each must go somewhere
+		assertLines(wrapper, "cafe\u0301 cafe\u0301", 4, "cafe\u0301", "cafe\u0301");
+		assertLines(wrapper, "\u725b\u4e73", 0, "\u725b\u4e73");
+		Assert.assertEquals(4, wrapper.getLongestLine());
+	}
+
+	/**
+	 * Checks a message is wrapped to the given lines.
+	 * @param wrapper The wrapper to test.
+	 * @param message The message to wrap.
+	 * @param wrap The wrap length.
+	 * @param expected The expected lines.
+	 */
+	private static void assertLines(final WordWrapper wrapper, final String message, final int wrap, final String... expected) {
+		wrapper.wrap(message, wrap, NEWLINE);
+		String[] actual = new String[wrapper.getLineCount()];
+		for (int i = 0; i < actual.length; i++) {
+			actual[i] = message.substring(wrapper.getLineStart(i), wrapper.getLineEnd(i));
+		}
+		Assert.assertArrayEquals("wrap " + wrap + " message '" + message + "'", expected, actual);
+	}
+
+	/**
+	 * Checks the wrapped lines match the historical wrapping.
+	 * @param wrapper The wrapper to test.
+	 * @param message The message to wrap.
+	 * @param wrap The wrap length.
+	 */
+	private static void compare(final WordWrapper wrapper, final String message, final int wrap) {
+		String[] expected = legacyWrap(message, wrap);
+		wrapper.wrap(message, wrap, NEWLINE);
+		List<String> actual = new ArrayList<String>();
+		int longest = 0;
+		for (int i = 0; i < wrapper.getLineCount(); i++) {
+			actual.add(message.substring(wrapper.getLineStart(i), wrapper.getLineEnd(i)));
+		}
+		for (String line : expected) {
+			longest = Math.max(longest, line.length());
+		}
+		String description = "wrap " + wrap + " message '" + message + "'";
+		Assert.assertArrayEquals(description, expected, actual.toArray(new String[actual.size()]));
+		Assert.assertEquals(description, longest, wrapper.getLongestLine());
+	}
+
+	/**
+	 * The lines a message was historically wrapped to, before WordWrapper existed.
+	 * @param message The message to wrap.
+	 * @param wrap The wrap length.
+	 * @return The lines which the bubble was drawn around.
+	 */
+	private static String[] legacyWrap(final String message, final int wrap) {
+		String wrapped = message;
+		if (wrap > 0) {
+			List<String> result = new ArrayList<String>();
+			for (String line : message.split(NEWLINE)) {
+				result.add(WordUtils.wrap(line, wrap, null, true));
+			}
+			wrapped = StringUtils.join(result, NEWLINE);
+		}
+		String[] lines = wrapped.split(NEWLINE);
+		return lines.length > 0 ? lines : new String[]{""};
+	}
+}